@@ -0,0 +1,43 @@
+package ex1.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+//the networks the benchmarks run on , by the name given in the @Param of the benchmark:
+//"alarm" is the alarm_net.xml of the project and "<topology>-<nodes>" (for example "dag-200" or "layered-48") is written by the
+//project's NetworkGenerator with fan-in 2 , binary variables and a fixed seed , so every run gets the same network.
+final class BenchmarkNetworks {
+    private static final String FAN_IN = "2";
+    private static final String SEED = "42";
+
+    private BenchmarkNetworks() {
+    }
+
+    static Engine.Network load(String name) {
+        try {
+            Path file = Files.createTempFile("ex1-bench-" + name + "-", ".xml");
+            file.toFile().deleteOnExit();
+            if (name.equals("alarm")) {
+                try (InputStream in = BenchmarkNetworks.class.getResourceAsStream("/alarm_net.xml")) {
+                    if (in == null) {
+                        throw new IllegalStateException("alarm_net.xml is not on the benchmark classpath");
+                    }
+                    Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else {
+                int dashIndex = name.lastIndexOf('-');
+                if (dashIndex == -1) {
+                    throw new IllegalArgumentException("Unknown benchmark network: " + name);
+                }
+                Engine.generate("--topology=" + name.substring(0, dashIndex), "--nodes=" + name.substring(dashIndex + 1),
+                        "--fan-in=" + FAN_IN, "--cardinality=2", "--seed=" + SEED, "--network=" + file);
+            }
+            return Engine.loadNetwork(file.toString());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
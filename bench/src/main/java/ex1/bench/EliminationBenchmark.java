@@ -0,0 +1,45 @@
+package ex1.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//the variable elimination algorithms , lexicographic order (2) and the heuristic order (3) , on the same queries.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EliminationBenchmark {
+    @Param({"alarm", "layered-48", "dag-100", "grid-64", "polytree-500"})
+    public String network;
+
+    @Param({"predictive", "diagnostic", "mixed"})
+    public String shape;
+
+    private Engine.Network net;
+    private Engine.Algorithm variableElimination;
+    private Engine.Algorithm veHeuristic;
+    private Object lexicographicQuery;
+    private Object heuristicQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        net = BenchmarkNetworks.load(network);
+        variableElimination = Engine.algorithm(2);
+        veHeuristic = Engine.algorithm(3);
+        lexicographicQuery = net.parseQuery(QueryShapes.conditional(net, shape, 2));
+        heuristicQuery = net.parseQuery(QueryShapes.conditional(net, shape, 3));
+    }
+
+    @Benchmark
+    public double variableElimination() {
+        return variableElimination.calculate(lexicographicQuery, net);
+    }
+
+    @Benchmark
+    public double veHeuristic() {
+        return veHeuristic.calculate(heuristicQuery, net);
+    }
+}
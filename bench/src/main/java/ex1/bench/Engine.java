@@ -0,0 +1,155 @@
+package ex1.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+//the bridge between the benchmarks and the project classes.
+//the project lives in the default package , which JMH doesn't allow for benchmarks and java doesn't allow to import ,
+//so the classes are found by name once and called through method handles (which the JIT inlines like a normal call).
+final class Engine {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final Class<?> EXTRACTOR = load("Extractor");
+    private static final Class<?> NETWORK = load("BayesianNetwork");
+    private static final Class<?> QUERY = load("Query");
+    private static final Class<?> ALGORITHM = load("BayesianAlgorithm");
+    private static final Class<?> FACTORY = load("AlgorithmFactory");
+    private static final Class<?> GENERATOR = load("NetworkGenerator");
+
+    private static final MethodHandle NEW_EXTRACTOR = constructor(EXTRACTOR, MethodType.methodType(void.class));
+    private static final MethodHandle PARSE_NETWORK = virtual(EXTRACTOR, "parseNetwork", MethodType.methodType(void.class, String.class));
+    private static final MethodHandle GET_NETWORK = virtual(EXTRACTOR, "getNetwork", MethodType.methodType(NETWORK));
+    private static final MethodHandle PARSE_QUERY = virtual(EXTRACTOR, "parseQuery", MethodType.methodType(QUERY, String.class));
+    private static final MethodHandle CREATE_ALGORITHM = statik(FACTORY, "createAlgorithm", MethodType.methodType(ALGORITHM, int.class));
+    private static final MethodHandle CALCULATE = virtual(ALGORITHM, "calculateProbability", MethodType.methodType(void.class, QUERY, NETWORK));
+    private static final MethodHandle GET_PROBABILITY = virtual(ALGORITHM, "getProbability", MethodType.methodType(double.class));
+    private static final MethodHandle SIZE = virtual(NETWORK, "size", MethodType.methodType(int.class));
+    private static final MethodHandle GET_NAME = virtual(NETWORK, "getName", MethodType.methodType(String.class, int.class));
+    private static final MethodHandle GET_OUTCOME = virtual(NETWORK, "getOutcome", MethodType.methodType(String.class, int.class, int.class));
+    private static final MethodHandle GENERATOR_MAIN = statik(GENERATOR, "main", MethodType.methodType(void.class, String[].class));
+    private static final MethodHandle GET_PARENTS = virtual(NETWORK, "getParents", MethodType.methodType(int[].class, int.class));
+
+    private Engine() {
+    }
+
+    //a parsed and compiled network , with the extractor that parses its query lines.
+    static final class Network {
+        private final Object extractor;
+        private final Object compiled;
+
+        private Network(Object extractor, Object compiled) {
+            this.extractor = extractor;
+            this.compiled = compiled;
+        }
+
+        int size() {
+            return (int) call(SIZE, compiled);
+        }
+
+        String getName(int id) {
+            return (String) call(GET_NAME, compiled, id);
+        }
+
+        String getOutcome(int id, int outcomeIndex) {
+            return (String) call(GET_OUTCOME, compiled, id, outcomeIndex);
+        }
+
+        int[] getParents(int id) {
+            return (int[]) call(GET_PARENTS, compiled, id);
+        }
+
+        //parsing a line in the format of the input file , for example "P(B=T|J=T,M=T),2".
+        Object parseQuery(String line) {
+            return call(PARSE_QUERY, extractor, line);
+        }
+    }
+
+    //an algorithm object of one type , it keeps its state between the calls like in Ex1.
+    static final class Algorithm {
+        private final Object algorithm;
+
+        private Algorithm(int type) {
+            this.algorithm = call(CREATE_ALGORITHM, type);
+        }
+
+        double calculate(Object query, Network network) {
+            try {
+                CALCULATE.invoke(algorithm, query, network.compiled);
+                return (double) GET_PROBABILITY.invoke(algorithm);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    static Network loadNetwork(String path) {
+        Object extractor = call(NEW_EXTRACTOR);
+        call(PARSE_NETWORK, extractor, path);
+        return new Network(extractor, call(GET_NETWORK, extractor));
+    }
+
+    static Algorithm algorithm(int type) {
+        return new Algorithm(type);
+    }
+
+    //running the project's network generator with its command line options.
+    static void generate(String... args) {
+        try {
+            GENERATOR_MAIN.invoke(args);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    //----- reflection helpers -----
+
+    private static Object call(MethodHandle handle, Object... args) {
+        try {
+            return handle.invokeWithArguments(args);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException(t);
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Project class " + name + " is not on the benchmark classpath", e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, MethodType type) {
+        try {
+            return LOOKUP.findConstructor(owner, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing constructor of " + owner.getName(), e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findVirtual(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing method " + owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle statik(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing method " + owner.getName() + "." + name, e);
+        }
+    }
+}
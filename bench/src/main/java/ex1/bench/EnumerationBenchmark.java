@@ -0,0 +1,36 @@
+package ex1.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//the simple inference algorithm (1) , it enumerates every hidden assignment so it only runs on the small networks.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnumerationBenchmark {
+    @Param({"alarm", "layered-12", "dag-16"})
+    public String network;
+
+    @Param({"predictive", "diagnostic", "mixed"})
+    public String shape;
+
+    private Engine.Network net;
+    private Engine.Algorithm simpleInference;
+    private Object query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        net = BenchmarkNetworks.load(network);
+        simpleInference = Engine.algorithm(1);
+        query = net.parseQuery(QueryShapes.conditional(net, shape, 1));
+    }
+
+    @Benchmark
+    public double simpleInference() {
+        return simpleInference.calculate(query, net);
+    }
+}
@@ -0,0 +1,33 @@
+package ex1.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//the lookup algorithm (0) on a joint query over all the variables of the network.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+    @Param({"alarm", "dag-100", "layered-1000"})
+    public String network;
+
+    private Engine.Network net;
+    private Engine.Algorithm lookup;
+    private Object query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        net = BenchmarkNetworks.load(network);
+        lookup = Engine.algorithm(0);
+        query = net.parseQuery(QueryShapes.joint(net));
+    }
+
+    @Benchmark
+    public double lookup() {
+        return lookup.calculate(query, net);
+    }
+}
@@ -0,0 +1,76 @@
+package ex1.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//builds the query lines that the benchmarks run , by the shape of the query on the network's DAG:
+//"predictive" asks a deepest variable given a root , "diagnostic" asks a root given a deepest variable ,
+//and "mixed" asks a variable from the middle given both of them. every variable takes its first outcome.
+final class QueryShapes {
+    private QueryShapes() {
+    }
+
+    //a joint query over all the variables , answered by the lookup algorithm.
+    static String joint(Engine.Network network) {
+        List<String> assignments = new ArrayList<>();
+        for (int id = 0; id < network.size(); id++) {
+            assignments.add(assign(network, id));
+        }
+        return "P(" + String.join(",", assignments) + ")";
+    }
+
+    //a conditional query of the given shape for the given algorithm type.
+    static String conditional(Engine.Network network, String shape, int algorithmType) {
+        int[] depths = depths(network);
+        int root = -1;
+        int deepest = -1;
+        for (int id = 0; id < network.size(); id++) {
+            if (depths[id] == 0 && root == -1) root = id;
+            if (deepest == -1 || depths[id] > depths[deepest]) deepest = id;
+        }
+        int middle = -1;
+        for (int id = 0; id < network.size(); id++) {
+            if (id != root && id != deepest && (middle == -1
+                    || Math.abs(depths[id] - depths[deepest] / 2) < Math.abs(depths[middle] - depths[deepest] / 2))) {
+                middle = id;
+            }
+        }
+        String line;
+        switch (shape) {
+            case "predictive":
+                line = "P(" + assign(network, deepest) + "|" + assign(network, root) + ")";
+                break;
+            case "diagnostic":
+                line = "P(" + assign(network, root) + "|" + assign(network, deepest) + ")";
+                break;
+            case "mixed":
+                line = "P(" + assign(network, middle) + "|" + assign(network, root) + "," + assign(network, deepest) + ")";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown query shape: " + shape);
+        }
+        return line + "," + algorithmType;
+    }
+
+    //the length of the longest path from a root to every variable.
+    private static int[] depths(Engine.Network network) {
+        int[] depths = new int[network.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int id = 0; id < network.size(); id++) {
+                for (int parent : network.getParents(id)) {
+                    if (depths[parent] + 1 > depths[id]) {
+                        depths[id] = depths[parent] + 1;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return depths;
+    }
+
+    private static String assign(Engine.Network network, int id) {
+        return network.getName(id) + "=" + network.getOutcome(id, 0);
+    }
+}
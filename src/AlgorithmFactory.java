@@ -1,19 +1,49 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
 //a factory class to create different types of Bayesian algorithms by the type of algorithm.
 //this is clear design and simple to use.
 public class AlgorithmFactory {
+    //the fork/join pools of the parallel enumeration and the sampler by their parallelism , shared by all the algorithm objects of the run.
+    private static final Map<Integer, ForkJoinPool> FORK_JOIN_POOLS = new HashMap<>();
 
     public static BayesianAlgorithm createAlgorithm(int type){
+        return createAlgorithm(type, new RunOptions());
+    }
+
+    //the algorithms with the settings of the run , for example the elimination ordering of the heuristic VE.
+    public static BayesianAlgorithm createAlgorithm(int type, RunOptions options){
         switch (type) {
                case 0:
                    return new Lookup();
                case 1:
-                   return new SimpleInference();
+                   return options.getEnumerationThreads() > 1 ? new SimpleInference(forkJoinPool(options.getEnumerationThreads())) : new SimpleInference();
                case 2:
-                   return new VariableElimination();
+                   return new VariableElimination(new LexicographicOrdering(), options.isBayesBall(), options.getParallelJoinThreshold(), options.isFusedElimination(), options.getSparseDensity());
                case 3:
-                   return new VEHeuristic();
+                   return createEliminationAlgorithm(options.getOrdering(), options);
+               case 4:
+                   return new JunctionTreeInference(options);
+               case 5:
+                   return new LikelihoodWeighting(options.getSamples(), options.getSeed(),
+                           options.getSamplerThreads() > 1 ? forkJoinPool(options.getSamplerThreads()) : null);
+               case 6:
+                   return new GibbsSampling(options.getSamples(), options.getChains(), options.getBurnIn(), options.getThinning(),
+                           options.getSeed(), options.getSamplerThreads() > 1 ? forkJoinPool(options.getSamplerThreads()) : null);
                default:
                    throw new IllegalArgumentException("Invalid algorithm type: " + type);
            }
     }
+
+    //the heuristic VE with the given ordering and the other settings of the run , for the queries the cost planner reroutes.
+    public static BayesianAlgorithm createEliminationAlgorithm(String ordering, RunOptions options) {
+        return new VEHeuristic(EliminationOrdering.forName(ordering), options.isBayesBall(), options.getParallelJoinThreshold(), options.isFusedElimination(), options.getSparseDensity());
+    }
+
+    private static ForkJoinPool forkJoinPool(int parallelism) {
+        synchronized (FORK_JOIN_POOLS) {
+            return FORK_JOIN_POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+        }
+    }
 }
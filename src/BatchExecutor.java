@@ -0,0 +1,195 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+//this class runs a batch of queries on a pool of worker threads and returns the results in the input order.
+//every worker keeps its own algorithm objects (one per algorithm type) , the algorithms are stateful so they are never shared ,
+//while the compiled network and the cache are shared by all the workers.
+//with one thread the queries run one by one on the calling thread , the same as the simple loop.
+//the conditional queries that share their query variables , evidence and algorithm (like P(B=T|J=T,M=T) and P(B=F|J=T,M=T))
+//are a group , when the algorithm gets the whole posterior in one run the group is calculated once and every query reads its entry.
+//with a metrics file every result carries the metrics of its query , the wall time is measured on the worker around the algorithm.
+//with a budget every query is planned before it runs , and a query over the budget runs on the engine the cost planner chose.
+public class BatchExecutor {
+    private final BayesianNetwork network;
+    private final QueryCache cache;
+    private final RunOptions options;
+    private final int threads;
+    private final boolean grouping;
+    private final boolean collectMetrics;
+    private final CostPlanner planner; // null without a budget
+    //the algorithm objects of the current worker thread , by the key of their plan (the algorithm type when not rerouted).
+    private final ThreadLocal<Map<String, BayesianAlgorithm>> workerAlgorithms = ThreadLocal.withInitial(HashMap::new);
+
+    //constructor
+    public BatchExecutor(BayesianNetwork network, QueryCache cache, RunOptions options) {
+        this.network = network;
+        this.cache = cache;
+        this.options = options;
+        this.threads = options.getThreads();
+        this.grouping = options.isGrouping();
+        this.collectMetrics = options.getMetricsFile() != null;
+        this.planner = CostPlanner.forOptions(options);
+    }
+
+    //running all the queries , the i-th result belongs to the i-th query.
+    public List<QueryResult> run(List<Query> queries) {
+        //the units of work , a single query or a group , by the position of their first query.
+        List<List<Integer>> units = groupQueries(queries);
+        QueryResult[] results = new QueryResult[queries.size()];
+        if (threads == 1 || units.size() < 2) {
+            for (List<Integer> unit : units) {
+                runUnit(unit, queries, results);
+            }
+            return Arrays.asList(results);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, units.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(units.size());
+            for (List<Integer> unit : units) {
+                futures.add(pool.submit(() -> runUnit(unit, queries, results)));
+            }
+            //waiting for all the units , every one of them wrote its results at the positions of its queries.
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error: the batch was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error: a query failed " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return Arrays.asList(results);
+    }
+
+    //splitting the queries into units , the queries of a group are one unit and every other query is a unit of its own.
+    private List<List<Integer>> groupQueries(List<Query> queries) {
+        List<List<Integer>> units = new ArrayList<>();
+        Map<String, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            String key = grouping ? groupKey(queries.get(i)) : null;
+            if (key == null) {
+                units.add(Collections.singletonList(i));
+                continue;
+            }
+            List<Integer> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+                units.add(group);
+            }
+            group.add(i);
+        }
+        return units;
+    }
+
+    //the key of the group of the query , or null when it is answered on its own.
+    //only the algorithms that get the posterior in one run are grouped , and every outcome must be known to the network
+    //(an unknown outcome is reported by the algorithm of the single query).
+    private String groupKey(Query query) {
+        if (query.isJointQuery() || !algorithmFor(QueryPlan.unplanned(query.getAlgorithmType())).computesPosteriorAtOnce()) {
+            return null;
+        }
+        for (Map<String, String> assignment : Arrays.asList(query.getQuery(), query.getEvidence())) {
+            for (Map.Entry<String, String> entry : assignment.entrySet()) {
+                int id = network.getId(entry.getKey());
+                if (id == -1 || network.getOutcomeIndex(id, entry.getValue()) == -1) {
+                    return null;
+                }
+            }
+        }
+        //the order of the query variables is kept (the algorithms read them by order) and the evidence is sorted.
+        return query.getAlgorithmType() + "|" + query.getQuery().keySet() + "|" + new TreeMap<>(query.getEvidence());
+    }
+
+    private void runUnit(List<Integer> unit, List<Query> queries, QueryResult[] results) {
+        if (unit.size() == 1) {
+            results[unit.get(0)] = runQuery(queries.get(unit.get(0)));
+            return;
+        }
+        List<Query> group = new ArrayList<>(unit.size());
+        for (int i : unit) group.add(queries.get(i));
+        List<QueryResult> groupResults = runGroup(group);
+        for (int i = 0; i < unit.size(); i++) {
+            results[unit.get(i)] = groupResults.get(i);
+        }
+    }
+
+    //answering the queries of a group on the current thread , the posterior is calculated by the first query that misses the cache.
+    public List<QueryResult> runGroup(List<Query> group) {
+        List<QueryResult> results = new ArrayList<>(group.size());
+        Posterior posterior = null;
+        //the queries of a group have the same estimate , so the plan of the first one is the plan of all of them.
+        QueryPlan plan = planFor(group.get(0));
+        BayesianAlgorithm algorithm = algorithmFor(plan);
+        if (!algorithm.computesPosteriorAtOnce()) {
+            for (Query query : group) results.add(runQuery(query));
+            return results;
+        }
+        for (Query query : group) {
+            long start = System.nanoTime();
+            QueryResult result = cache.get(query);
+            if (result != null) {
+                results.add(fromCache(result, start));
+                continue;
+            }
+            String source = posterior == null ? QueryMetrics.COMPUTED : QueryMetrics.GROUP;
+            if (posterior == null) {
+                posterior = algorithm.calculatePosterior(query, network);
+            }
+            int entry = posterior.indexOf(query.getQuery());
+            result = QueryResult.of(algorithm, posterior.getProbability(entry), posterior.getAdditionCount(entry),
+                    posterior.getMultiplicationCount(entry));
+            if (collectMetrics) {
+                result = result.withMetrics(QueryMetrics.of(algorithm, network, source, System.nanoTime() - start, plan));
+            }
+            cache.put(query, result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    //answering one query on the current thread , from the cache if it was already answered.
+    //two workers that miss the same query at the same time both calculate it , and the result is the same.
+    public QueryResult runQuery(Query query) {
+        long start = System.nanoTime();
+        QueryResult cached = cache.get(query);
+        if (cached != null) {
+            return fromCache(cached, start);
+        }
+        QueryPlan plan = planFor(query);
+        BayesianAlgorithm algorithm = algorithmFor(plan);
+        algorithm.calculateProbability(query, network);
+        QueryResult result = QueryResult.of(algorithm);
+        if (collectMetrics) {
+            result = result.withMetrics(QueryMetrics.of(algorithm, network, QueryMetrics.COMPUTED, System.nanoTime() - start, plan));
+        }
+        cache.put(query, result);
+        return result;
+    }
+
+    //a result from the cache , its metrics keep the work of the run that calculated it with the time of the lookup.
+    private QueryResult fromCache(QueryResult cached, long start) {
+        if (!collectMetrics || cached.getMetrics() == null) {
+            return cached;
+        }
+        return cached.withMetrics(cached.getMetrics().reused(QueryMetrics.CACHE, System.nanoTime() - start));
+    }
+
+    //the plan of the query , its own algorithm when there is no budget.
+    private QueryPlan planFor(Query query) {
+        return planner == null ? QueryPlan.unplanned(query.getAlgorithmType()) : planner.plan(query, network);
+    }
+
+    //the algorithm object of the plan for the current thread.
+    private BayesianAlgorithm algorithmFor(QueryPlan plan) {
+        return workerAlgorithms.get().computeIfAbsent(plan.algorithmKey(), key -> plan.getOrdering() == null
+                ? AlgorithmFactory.createAlgorithm(plan.getAlgorithmType(), options)
+                : AlgorithmFactory.createEliminationAlgorithm(plan.getOrdering(), options));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
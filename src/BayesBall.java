@@ -0,0 +1,74 @@
+//the Bayes-ball algorithm (Shachter 1998) , it finds the nodes that are relevant to a query given the evidence.
+//a ball is sent from every query variable and bounces around the DAG by the d-separation rules:
+//- a ball that comes to a hidden variable from a child passes to its parents and to its children.
+//- a ball that comes to a hidden variable from a parent passes only to its children.
+//- a ball that comes to an evidence variable from a parent bounces back to its parents , and from a child it stops.
+//a variable that is marked on the top (it sent the ball to its parents) is requisite , its CPT is needed for the query.
+//the CPTs of all the other variables can be dropped , the answer after the normalization stays the same.
+public class BayesBall {
+
+    //returns for every variable id whether its CPT is requisite for P(query | evidence) ,
+    //both arrays are indexed by id and -1 marks an unassigned variable.
+    public static boolean[] requisite(BayesianNetwork network, int[] queryAssignment, int[] evidence) {
+        int n = network.size();
+        boolean[] top = new boolean[n];
+        boolean[] bottom = new boolean[n];
+        boolean[] visitedFromChild = new boolean[n];
+        boolean[] visitedFromParent = new boolean[n];
+        //the schedule holds a variable and the direction the ball came from (from a child is the even entry).
+        int[] schedule = new int[2 * n];
+        int size = 0;
+        for (int variable = 0; variable < n; variable++) {
+            if (queryAssignment[variable] != -1 && evidence[variable] == -1) {
+                visitedFromChild[variable] = true;
+                schedule[size++] = 2 * variable;
+            }
+        }
+        while (size > 0) {
+            int entry = schedule[--size];
+            int variable = entry / 2;
+            boolean fromChild = entry % 2 == 0;
+            boolean observed = evidence[variable] != -1;
+            if (fromChild && !observed) {
+                if (!top[variable]) {
+                    top[variable] = true;
+                    size = visitParents(network, variable, schedule, size, visitedFromChild);
+                }
+                if (!bottom[variable]) {
+                    bottom[variable] = true;
+                    size = visitChildren(network, variable, schedule, size, visitedFromParent);
+                }
+            } else if (!fromChild) {
+                if (observed && !top[variable]) {
+                    top[variable] = true;
+                    size = visitParents(network, variable, schedule, size, visitedFromChild);
+                } else if (!observed && !bottom[variable]) {
+                    bottom[variable] = true;
+                    size = visitChildren(network, variable, schedule, size, visitedFromParent);
+                }
+            }
+        }
+        return top;
+    }
+
+    //every variable is scheduled at most once from each direction , so the schedule never holds more than 2n entries.
+    private static int visitParents(BayesianNetwork network, int variable, int[] schedule, int size, boolean[] visitedFromChild) {
+        for (int parent : network.getParents(variable)) {
+            if (!visitedFromChild[parent]) {
+                visitedFromChild[parent] = true;
+                schedule[size++] = 2 * parent;
+            }
+        }
+        return size;
+    }
+
+    private static int visitChildren(BayesianNetwork network, int variable, int[] schedule, int size, boolean[] visitedFromParent) {
+        for (int child : network.getChildren(variable)) {
+            if (!visitedFromParent[child]) {
+                visitedFromParent[child] = true;
+                schedule[size++] = 2 * child + 1;
+            }
+        }
+        return size;
+    }
+}
@@ -1,6 +1,5 @@
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 //an abstract class that represents the Bayesian algorithm , it has main method to calculate the probability of a query given the CPTs.
 //as well as it should update the addition and multiplication counts.
@@ -9,9 +8,35 @@ public abstract class BayesianAlgorithm {
     protected int additionCount = 0;
     protected int multiplicationCount = 0;
     protected double probability = 0.0;
+    //the shape of the work of the algorithms that build factors , -1 for the algorithms that don't.
+    //the induced width is the number of variables of the largest factor that was joined for an elimination minus one.
+    protected int inducedWidth = -1;
+    protected int largestFactorSize = -1;
+    //the work of the last query for the metrics file , -1 (or null) for what the algorithm doesn't do.
+    //the cells are the entries all the factors of the query keep (the retained size , a sparse factor keeps only its entries
+    //that are not 0) , the order is the hidden variables by the order they were summed out.
+    protected int factorsCreated = -1;
+    protected long cellsAllocated = -1;
+    protected int[] eliminationOrder = null;
 
-    //this method should be implemented in the subclasses to calculate the probability of a query given the CPTs.
-    public abstract void calculateProbability(Query query, List<CPT> CPTS);
+    //this method should be implemented in the subclasses to calculate the probability of a query given the compiled network.
+    public abstract void calculateProbability(Query query, BayesianNetwork network);
+
+    //the distribution over all the assignments of the query variables given the evidence of the query.
+    //by default every entry is calculated as its own query , the algorithms that get all of them in one run override it.
+    public Posterior calculatePosterior(Query query, BayesianNetwork network) {
+        Posterior posterior = new Posterior(query, network);
+        for (int entry = 0; entry < posterior.size(); entry++) {
+            calculateProbability(posterior.queryOf(entry, query), network);
+            posterior.set(entry, probability, additionCount, multiplicationCount);
+        }
+        return posterior;
+    }
+
+    //true when calculatePosterior costs about one query , so the queries that differ only by their outcomes are worth grouping.
+    public boolean computesPosteriorAtOnce() {
+        return false;
+    }
 
     //getters , no setters since we cannot set the counts.
     public int getAdditionCount() {
@@ -26,37 +51,96 @@ public abstract class BayesianAlgorithm {
         return probability;
     }
 
+    public int getInducedWidth() {
+        return inducedWidth;
+    }
+
+    public int getLargestFactorSize() {
+        return largestFactorSize;
+    }
+
+    public int getFactorsCreated() {
+        return factorsCreated;
+    }
+
+    public long getCellsAllocated() {
+        return cellsAllocated;
+    }
+
+    public int[] getEliminationOrder() {
+        return eliminationOrder;
+    }
+
     //shared method among 1 2 3 algorithms to extract the probability of a query from the CPTs without operations.
     //we're checking if the query variable is as CPT main variable and if the parents are as the condition variables.
-    protected Double tryExtractProbability(Query query, List<CPT> CPTs) {
+    protected Double tryExtractProbability(Query query, BayesianNetwork network) {
+        int cpt = extractableCPT(query, network);
+        if (cpt == -1) {
+            return null;
+        }
         String queryVariable = query.getQuery().keySet().iterator().next();
-        String queryValue = query.getQuery().get(queryVariable);
-        //iterating over the CPTs until we find equalization between the query variable and the CPT variable.
-        for (CPT CPT : CPTs) {
-            if (CPT.getVariable().getName().equals(queryVariable)) {
-                //building the assignments for the getProbability method.
-                Map<String, String> assignmentBuilder = new HashMap<>();
-                assignmentBuilder.put(queryVariable, queryValue);
-                boolean parentsFound = true;
-                //iterating over the parents of the CPT and checking if they are in the query.
-                for (Variable parent : CPT.getParents()) {
-                    //if one of the parents is not equal to the evidence breaking and starting over with another CPT.
-                    if (!query.getEvidence().containsKey(parent.getName())) {
-                        parentsFound = false;
-                        break;
-                    }
-                    assignmentBuilder.put(parent.getName(), query.getEvidence().get(parent.getName()));
-                }
-                //checking if the assignment is equal to the CPT
-                if (parentsFound && query.getEvidence().size() == CPT.getParents().size()) {
-                    //if the assignment is equal to the CPT we return the probability , explicitly initializing the addition and multiplication counts to 0 for clearance.
-                    additionCount = 0;
-                    multiplicationCount = 0;
-                    return CPT.getProbability(assignmentBuilder);
-                }
+        int variable = network.getCPTVariable(cpt);
+        //building the assignment for the getProbability method.
+        int[] assignment = network.encode(query.getEvidence());
+        int outcome = network.getOutcomeIndex(variable, query.getQuery().get(queryVariable));
+        assignment[variable] = outcome == -1 ? -2 : outcome;
+        //if the assignment is equal to the CPT we return the probability , explicitly initializing the addition and multiplication counts to 0 for clearance.
+        additionCount = 0;
+        multiplicationCount = 0;
+        return network.getProbability(cpt, assignment);
+    }
+
+    //the CPT that holds the answer of the query , or -1 when the answer has to be calculated.
+    protected static int extractableCPT(Query query, BayesianNetwork network) {
+        String queryVariable = query.getQuery().keySet().iterator().next();
+        int variable = network.getId(queryVariable);
+        //only the CPT of the query variable can match.
+        int cpt = variable == -1 ? -1 : network.getCPTFor(variable);
+        if (cpt == -1) {
+            return -1;
+        }
+        int[] parents = network.getParents(variable);
+        //iterating over the parents of the CPT and checking if they are in the query , if one is missing there is no match.
+        for (int parent : parents) {
+            if (!query.getEvidence().containsKey(network.getName(parent))) {
+                return -1;
+            }
+        }
+        //checking if the assignment is equal to the CPT
+        if (query.getEvidence().size() != parents.length) {
+            return -1;
+        }
+        return cpt;
+    }
+
+    //checking that every variable a sampler draws has a CPT , a variable that is only named as a parent has no distribution.
+    protected static void requireCPTs(BayesianNetwork network, int[] variables) {
+        for (int variable : variables) {
+            if (network.getCPTFor(variable) == -1) {
+                throw new IllegalArgumentException("Error: the variable " + network.getName(variable)
+                        + " has no CPT in the network , the samplers can't draw it");
+            }
+        }
+    }
 
+    //getting the ancestors of the query and evidence variables (the assigned ones) , walking up the parent lists of the network.
+    protected static boolean[] getAncestors(BayesianNetwork network, int[] knownAssignment) {
+        boolean[] ancestors = new boolean[network.size()];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int variable = 0; variable < network.size(); variable++) {
+            if (knownAssignment[variable] != -1) {
+                ancestors[variable] = true;
+                stack.push(variable);
+            }
+        }
+        while (!stack.isEmpty()) {
+            for (int parent : network.getParents(stack.pop())) {
+                if (!ancestors[parent]) {
+                    ancestors[parent] = true;
+                    stack.push(parent);
+                }
             }
         }
-        return null; // if no match is found, return null
+        return ancestors;
     }
 }
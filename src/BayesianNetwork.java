@@ -0,0 +1,340 @@
+import java.nio.DoubleBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//this class is the compiled form of the network that the algorithms run on.
+//every variable gets a dense int id and every outcome an int index , so the hot paths compare ints instead of strings.
+//the ids are given by the lexicographic order of the names , so sorting by id is the same as sorting by name.
+//all the arrays that the getters return are shared between the queries and must not be modified.
+public class BayesianNetwork {
+    //the CPTs as they were parsed , kept for debugging and for callers that need the objects.
+    //a network loaded from a compiled file builds them only when they are asked for.
+    private List<CPT> CPTs;
+    //per variable id.
+    private final String[] names;
+    private final String[][] outcomes;
+    private final int[] cardinalities;
+    private final int[][] parents;
+    private final int[][] children;
+    private final int[] topologicalRank;
+    private final int[] cptOfVariable;
+    private final Map<String, Integer> idsByName;
+    private final List<Map<String, Integer>> outcomeIndices;
+    //per CPT , by the order of the CPTs list.
+    private final int[] cptVariables;
+    private final int[][] cptScopes;
+    private final int[][] cptStrides;
+    //the tables are either arrays (a parsed network) or one mapped buffer with an offset per CPT (a compiled file).
+    //a mapped table is read in place by getProbability , and copied to an array only the first time getCPTTable asks for it.
+    private final double[][] cptTables;
+    private final DoubleBuffer mappedTables;
+    private final int[] cptOffsets;
+    private final AtomicReferenceArray<double[]> copiedTables;
+
+    //compiling the network from the parsed CPTs.
+    public BayesianNetwork(List<CPT> CPTs) {
+        this(Structure.of(CPTs), null, null);
+        this.CPTs = Collections.unmodifiableList(new ArrayList<>(CPTs));
+    }
+
+    //a network whose tables stay in a mapped buffer , the variables must be in lexicographic order (they are the ids).
+    //the scope of every CPT is its parents by order and then its variable , and its table starts at its offset in the buffer.
+    static BayesianNetwork mapped(String[] names, String[][] outcomes, int[][] cptScopes, DoubleBuffer tables, int[] cptOffsets) {
+        return new BayesianNetwork(new Structure(names, outcomes, cptScopes, null), tables, cptOffsets);
+    }
+
+    private BayesianNetwork(Structure structure, DoubleBuffer mappedTables, int[] cptOffsets) {
+        int n = structure.names.length;
+        this.names = structure.names;
+        this.outcomes = structure.outcomes;
+        this.cardinalities = new int[n];
+        this.parents = new int[n][];
+        this.cptOfVariable = new int[n];
+        Map<String, Integer> ids = new HashMap<>();
+        List<Map<String, Integer>> indices = new ArrayList<>();
+        for (int id = 0; id < n; id++) {
+            cardinalities[id] = outcomes[id].length;
+            Map<String, Integer> outcomeIndex = new HashMap<>();
+            for (int i = 0; i < outcomes[id].length; i++) {
+                outcomeIndex.putIfAbsent(outcomes[id][i], i);
+            }
+            indices.add(Collections.unmodifiableMap(outcomeIndex));
+            ids.put(names[id], id);
+            parents[id] = new int[0];
+            cptOfVariable[id] = -1;
+        }
+        this.idsByName = Collections.unmodifiableMap(ids);
+        this.outcomeIndices = Collections.unmodifiableList(indices);
+        //the strides of the tables , the scope is the parents by order and then the main variable (the CPT layout).
+        int count = structure.cptScopes.length;
+        this.cptScopes = structure.cptScopes;
+        this.cptVariables = new int[count];
+        this.cptStrides = new int[count][];
+        for (int c = 0; c < count; c++) {
+            int[] scope = cptScopes[c];
+            int variable = scope[scope.length - 1];
+            int[] strides = new int[scope.length];
+            int stride = 1;
+            for (int i = scope.length - 1; i >= 0; i--) {
+                strides[i] = stride;
+                stride *= cardinalities[scope[i]];
+            }
+            cptVariables[c] = variable;
+            cptStrides[c] = strides;
+            cptOfVariable[variable] = c;
+            parents[variable] = Arrays.copyOf(scope, scope.length - 1);
+        }
+        //the children of every variable by id order , the reverse of the parent lists.
+        int[] childCount = new int[n];
+        for (int id = 0; id < n; id++) {
+            for (int parent : parents[id]) childCount[parent]++;
+        }
+        this.children = new int[n][];
+        for (int id = 0; id < n; id++) {
+            children[id] = new int[childCount[id]];
+            childCount[id] = 0;
+        }
+        for (int id = 0; id < n; id++) {
+            for (int parent : parents[id]) children[parent][childCount[parent]++] = id;
+        }
+        //the topological order (Kahn) , every variable comes after its parents and the ready variables are taken by id.
+        //a cycle can't be ordered , its variables just come last by id.
+        this.topologicalRank = new int[n];
+        int[] waiting = new int[n];
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int id = 0; id < n; id++) {
+            waiting[id] = parents[id].length;
+            if (waiting[id] == 0) ready.add(id);
+        }
+        Arrays.fill(topologicalRank, -1);
+        int rank = 0;
+        while (!ready.isEmpty()) {
+            int id = ready.poll();
+            topologicalRank[id] = rank++;
+            for (int child : children[id]) {
+                if (--waiting[child] == 0) ready.add(child);
+            }
+        }
+        for (int id = 0; id < n; id++) {
+            if (topologicalRank[id] == -1) topologicalRank[id] = rank++;
+        }
+        this.cptTables = structure.tables;
+        this.mappedTables = mappedTables;
+        this.cptOffsets = cptOffsets;
+        this.copiedTables = mappedTables == null ? null : new AtomicReferenceArray<>(count);
+    }
+
+    //the variables and CPT scopes of the parsed CPTs , the variables get their ids by the lexicographic order of their names.
+    private static final class Structure {
+        private final String[] names;
+        private final String[][] outcomes;
+        private final int[][] cptScopes;
+        private final double[][] tables;
+
+        private Structure(String[] names, String[][] outcomes, int[][] cptScopes, double[][] tables) {
+            this.names = names;
+            this.outcomes = outcomes;
+            this.cptScopes = cptScopes;
+            this.tables = tables;
+        }
+
+        private static Structure of(List<CPT> CPTs) {
+            //collecting every variable that appears as a main variable or as a parent.
+            Map<String, Variable> variablesByName = new TreeMap<>();
+            for (CPT cpt : CPTs) {
+                variablesByName.put(cpt.getVariable().getName(), cpt.getVariable());
+                for (Variable parent : cpt.getParents()) {
+                    variablesByName.putIfAbsent(parent.getName(), parent);
+                }
+            }
+            //the tree map iterates in lexicographic order which gives the ids.
+            int n = variablesByName.size();
+            String[] names = new String[n];
+            String[][] outcomes = new String[n][];
+            Map<String, Integer> ids = new HashMap<>();
+            int id = 0;
+            for (Variable variable : variablesByName.values()) {
+                names[id] = variable.getName();
+                outcomes[id] = variable.getOutcomes().toArray(new String[0]);
+                ids.put(names[id], id);
+                id++;
+            }
+            int[][] scopes = new int[CPTs.size()][];
+            double[][] tables = new double[CPTs.size()][];
+            for (int c = 0; c < CPTs.size(); c++) {
+                CPT cpt = CPTs.get(c);
+                int[] scope = new int[cpt.getParents().size() + 1];
+                for (int i = 0; i < cpt.getParents().size(); i++) {
+                    scope[i] = ids.get(cpt.getParents().get(i).getName());
+                }
+                scope[scope.length - 1] = ids.get(cpt.getVariable().getName());
+                scopes[c] = scope;
+                //the parsed table is used as it is , without a copy.
+                tables[c] = cpt.getTable();
+            }
+            return new Structure(names, outcomes, scopes, tables);
+        }
+    }
+
+    //getters for the variables metadata.
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    //returns -1 if there is no such variable.
+    public int getId(String name) {
+        Integer id = idsByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public int getCardinality(int id) {
+        return cardinalities[id];
+    }
+
+    public String getOutcome(int id, int outcomeIndex) {
+        return outcomes[id][outcomeIndex];
+    }
+
+    //returns -1 if the variable has no such outcome.
+    public int getOutcomeIndex(int id, String outcome) {
+        Integer index = outcomeIndices.get(id).get(outcome);
+        return index == null ? -1 : index;
+    }
+
+    public int[] getParents(int id) {
+        return parents[id];
+    }
+
+    public int[] getChildren(int id) {
+        return children[id];
+    }
+
+    //the position of the variable in a topological order of the network , parents always have a smaller rank.
+    public int getTopologicalRank(int id) {
+        return topologicalRank[id];
+    }
+
+    //getters for the compiled CPTs.
+    public synchronized List<CPT> getCPTs() {
+        if (CPTs == null) {
+            //rebuilding the objects of a network that was loaded from a compiled file.
+            Variable[] variables = new Variable[names.length];
+            for (int id = 0; id < names.length; id++) {
+                variables[id] = new Variable(names[id], Arrays.asList(outcomes[id]));
+            }
+            List<CPT> built = new ArrayList<>();
+            for (int c = 0; c < cptScopes.length; c++) {
+                List<Variable> cptParents = new ArrayList<>();
+                for (int parent : parents[cptVariables[c]]) {
+                    cptParents.add(variables[parent]);
+                }
+                built.add(new CPT(variables[cptVariables[c]], cptParents, getCPTTable(c)));
+            }
+            CPTs = Collections.unmodifiableList(built);
+        }
+        return CPTs;
+    }
+
+    public int getCPTCount() {
+        return cptScopes.length;
+    }
+
+    //the index of the CPT of the variable or -1 if the network doesn't define one.
+    public int getCPTFor(int id) {
+        return cptOfVariable[id];
+    }
+
+    public int getCPTVariable(int cpt) {
+        return cptVariables[cpt];
+    }
+
+    public int[] getCPTScope(int cpt) {
+        return cptScopes[cpt];
+    }
+
+    public int[] getCPTStrides(int cpt) {
+        return cptStrides[cpt];
+    }
+
+    public double[] getCPTTable(int cpt) {
+        if (cptTables != null) {
+            return cptTables[cpt];
+        }
+        double[] table = copiedTables.get(cpt);
+        if (table == null) {
+            //two threads may copy the same table at the same time , both copies are equal so either one can be kept.
+            table = new double[tableSize(cpt)];
+            DoubleBuffer source = mappedTables.duplicate();
+            source.position(cptOffsets[cpt]);
+            source.get(table);
+            copiedTables.compareAndSet(cpt, null, table);
+            table = copiedTables.get(cpt);
+        }
+        return table;
+    }
+
+    //the number of entries of the table , the product of the cardinalities of its scope.
+    public int tableSize(int cpt) {
+        return cptStrides[cpt][0] * cardinalities[cptScopes[cpt][0]];
+    }
+
+    //translating a map of names to outcomes into an assignment array indexed by id , -1 marks an unassigned variable.
+    public int[] encode(Map<String, String> assignment) {
+        int[] res = new int[names.length];
+        Arrays.fill(res, -1);
+        encodeInto(assignment, res);
+        return res;
+    }
+
+    //writing the assignment into an existing array , an unknown outcome is stored as -2 so it is not mistaken for unassigned.
+    public void encodeInto(Map<String, String> assignment, int[] target) {
+        for (Map.Entry<String, String> entry : assignment.entrySet()) {
+            int id = getId(entry.getKey());
+            if (id == -1) {
+                throw new IllegalArgumentException("Unknown variable: " + entry.getKey());
+            }
+            int outcome = getOutcomeIndex(id, entry.getValue());
+            target[id] = outcome == -1 ? -2 : outcome;
+        }
+    }
+
+    //the same logic as getProbability in the CPT class , but over an assignment array.
+    public double getProbability(int cpt, int[] assignment) {
+        int[] scope = cptScopes[cpt];
+        int[] strides = cptStrides[cpt];
+        int index = 0;
+        for (int i = 0; i < scope.length; i++) {
+            int outcome = assignment[scope[i]];
+            //adding debugging statements.
+            if (outcome == -1) {
+                System.out.println("Missing assignment for variable: " + names[scope[i]]);
+                return 0;
+            }
+            if (outcome == -2) {
+                System.out.println("Invalid outcome for variable: " + names[scope[i]]);
+                return 0;
+            }
+            index += outcome * strides[i];
+        }
+        return cptTables != null ? cptTables[cpt][index] : mappedTables.get(cptOffsets[cpt] + index);
+    }
+
+    //the product of all the CPTs under a full assignment , it makes getCPTCount() - 1 multiplications.
+    public double jointProbability(int[] assignment) {
+        double probability = 1.0;
+        for (int c = 0; c < cptScopes.length; c++) {
+            probability *= getProbability(c, assignment);
+        }
+        return probability;
+    }
+
+    //for debugging purposes.
+    @Override
+    public String toString() {
+        return "BayesianNetwork{variables=" + Arrays.toString(names) + ", CPTs=" + cptScopes.length + "}";
+    }
+}
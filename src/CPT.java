@@ -1,27 +1,39 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 //this class represents the conditional probability table (CPT) of a variable in a Bayesian network.
+//it is immutable and shared , the compiled network and every query read the same object and the same table.
 public class CPT {
     //it has one variable name it parents if it has and the probabilities table that given.
     private final Variable variable;
-    private List<Double> probabilities;
-    private List<Variable> parents;
+    //the table is a primitive array , the parsers write the numbers straight into it without boxing.
+    private final double[] table;
+    private final List<Variable> parents;
 
-    //constructor
-    public CPT(Variable variable) {
+    //constructor , the table is kept as it is (not copied) so the caller must not change it afterwards.
+    public CPT(Variable variable, List<Variable> parents, double[] table) {
         this.variable = variable;
-        this.probabilities = new ArrayList<>();
-        this.parents = new ArrayList<>();
+        this.parents = Collections.unmodifiableList(new ArrayList<>(parents));
+        this.table = table;
     }
 
-    //getters and setters
+    //getters
     public Variable getVariable() {
         return variable;
     }
 
+    //the table itself , it is shared with the compiled network so it must not be modified.
+    public double[] getTable() {
+        return table;
+    }
+
+    //a boxed copy of the table , for debugging and for callers that want a list.
     public List<Double> getProbabilities() {
+        List<Double> probabilities = new ArrayList<>(table.length);
+        for (double p : table) probabilities.add(p);
         return probabilities;
     }
 
@@ -29,16 +41,6 @@ public class CPT {
         return parents;
     }
 
-    public void setProbabilities(List<Double> probabilities) {
-        this.probabilities = probabilities;
-    }
-    //since not all the cpts have parents we need to check if the list is null or not and then initialize it and add the parent.
-    public void addParent(Variable parent) {
-        if (parents == null) {
-            parents = new ArrayList<>();
-        }
-        parents.add(parent);
-    }
     //for debugging purposes.
     @Override
     public String toString() {
@@ -57,7 +59,7 @@ public class CPT {
             }
             sb.append("}");
         }
-        sb.append(" , probabilities=").append(probabilities);
+        sb.append(" , probabilities=").append(Arrays.toString(table));
         sb.append("}\n");
 
         return sb.toString();
@@ -93,11 +95,11 @@ public class CPT {
             multiplier *= var.getOutcomesCount();
         }
         //for debug purposes.
-        if (index < 0 || index >= probabilities.size()) {
-            System.out.println("Index out of bounds for factor lookup: " + index + " for CPT of size " + probabilities.size());
+        if (index < 0 || index >= table.length) {
+            System.out.println("Index out of bounds for factor lookup: " + index + " for CPT of size " + table.length);
             return 0;
         }
-        return probabilities.get(index);
+        return table[index];
     }
 
 
@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+//a compact binary form of the compiled network , written once from a parsed network and then loaded instead of the xml file.
+//the file is memory mapped , the metadata is read at load time and the CPT tables are left in the mapped file (no copy).
+//the layout (little endian):
+//  int magic "BNC1" , int version , int number of variables , int number of CPTs
+//  per variable by id: string name , int number of outcomes , string per outcome (a string is an int length and UTF-8 bytes)
+//  per CPT: int scope length , the scope ids (the parents by order and then the variable)
+//  padding to 8 bytes , then all the tables one after the other as doubles (the CPT layout , the variable changes the fastest)
+//example , compiling once and then naming the compiled file in the first line of input.txt:
+//java CompiledNetworkFile alarm_net.xml alarm_net.bnc
+public class CompiledNetworkFile {
+    private static final int MAGIC = 0x31434E42; // "BNC1" in little endian
+    private static final int VERSION = 1;
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Error: usage is java CompiledNetworkFile <network.xml> <network.bnc>");
+        }
+        Extractor extractor = new Extractor();
+        extractor.parseNetwork(args[0]);
+        try {
+            write(extractor.getNetwork(), args[1]);
+        } catch (IOException e) {
+            throw new RuntimeException("Error: couldn't write the compiled network " + e.getMessage());
+        }
+    }
+
+    //true if the file starts with the magic number of a compiled network.
+    public static boolean isCompiled(String path) {
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(header, 0) == 4 && header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    //writing the network , the file is mapped and filled in place.
+    public static void write(BayesianNetwork network, String path) throws IOException {
+        int n = network.size();
+        int count = network.getCPTCount();
+        byte[][] names = new byte[n][];
+        byte[][][] outcomes = new byte[n][][];
+        long size = 16;
+        for (int id = 0; id < n; id++) {
+            names[id] = network.getName(id).getBytes(StandardCharsets.UTF_8);
+            outcomes[id] = new byte[network.getCardinality(id)][];
+            size += 4 + names[id].length + 4;
+            for (int i = 0; i < outcomes[id].length; i++) {
+                outcomes[id][i] = network.getOutcome(id, i).getBytes(StandardCharsets.UTF_8);
+                size += 4 + outcomes[id][i].length;
+            }
+        }
+        long tables = 0;
+        for (int c = 0; c < count; c++) {
+            size += 4 + 4L * network.getCPTScope(c).length;
+            tables += network.tableSize(c);
+        }
+        long tablesStart = (size + 7) / 8 * 8;
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw"); FileChannel channel = file.getChannel()) {
+            file.setLength(0);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, tablesStart + 8 * tables);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(count);
+            for (int id = 0; id < n; id++) {
+                putString(buffer, names[id]);
+                buffer.putInt(outcomes[id].length);
+                for (byte[] outcome : outcomes[id]) {
+                    putString(buffer, outcome);
+                }
+            }
+            for (int c = 0; c < count; c++) {
+                int[] scope = network.getCPTScope(c);
+                buffer.putInt(scope.length);
+                for (int variable : scope) {
+                    buffer.putInt(variable);
+                }
+            }
+            buffer.position((int) tablesStart);
+            DoubleBuffer doubles = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            for (int c = 0; c < count; c++) {
+                doubles.put(network.getCPTTable(c));
+            }
+            buffer.force();
+        }
+    }
+
+    //loading a compiled network , only the metadata is read and the tables stay in the mapped file.
+    public static BayesianNetwork load(String path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a compiled network file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version " + version);
+            }
+            int n = buffer.getInt();
+            int count = buffer.getInt();
+            String[] names = new String[n];
+            String[][] outcomes = new String[n][];
+            for (int id = 0; id < n; id++) {
+                names[id] = getString(buffer);
+                outcomes[id] = new String[buffer.getInt()];
+                for (int i = 0; i < outcomes[id].length; i++) {
+                    outcomes[id][i] = getString(buffer);
+                }
+                //the ids are the lexicographic order of the names , the network relies on it.
+                if (id > 0 && names[id - 1].compareTo(names[id]) >= 0) {
+                    throw new IOException("the variables are not in lexicographic order");
+                }
+            }
+            int[][] scopes = new int[count][];
+            int[] offsets = new int[count];
+            long offset = 0;
+            for (int c = 0; c < count; c++) {
+                scopes[c] = new int[buffer.getInt()];
+                long tableSize = 1;
+                for (int i = 0; i < scopes[c].length; i++) {
+                    scopes[c][i] = buffer.getInt();
+                    if (scopes[c][i] < 0 || scopes[c][i] >= n) {
+                        throw new IOException("CPT " + c + " has an unknown variable id " + scopes[c][i]);
+                    }
+                    tableSize *= outcomes[scopes[c][i]].length;
+                }
+                if (scopes[c].length == 0) {
+                    throw new IOException("CPT " + c + " has no variable");
+                }
+                offsets[c] = (int) offset;
+                offset += tableSize;
+            }
+            int tablesStart = (buffer.position() + 7) / 8 * 8;
+            if (tablesStart + 8 * offset != buffer.capacity()) {
+                throw new IOException("the tables don't match the size of the file");
+            }
+            buffer.position(tablesStart);
+            DoubleBuffer tables = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            return BayesianNetwork.mapped(names, outcomes, scopes, tables, offsets);
+        } catch (RuntimeException e) {
+            //a cut or corrupted file ends in a buffer underflow or a bad length.
+            throw new IOException("corrupted compiled network file " + e, e);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//this class estimates the cost of a query of the exact algorithms 1 , 2 and 3 before it runs , and keeps it inside the budgets.
+//the estimates come from the shapes of the network only , no table is allocated:
+//1. simple inference , the enumeration space , every assignment of the query variables sums over all the outcomes of the
+//   unassigned CPT variables and every leaf multiplies all the CPTs.
+//2. variable elimination , the ordering is run on tableless factors (Factor.shape) and every step joins the factors of the
+//   chosen variable , the largest joined factor is the memory and the joined cells of all the steps are the operations.
+//   the relevance pruning of --bayes-ball can only remove factors , so the estimate is an upper bound for it.
+//the memory budget is the largest factor in cells and the time budget is the operations , 0 turns a budget off.
+//a query that is over a budget is rejected (an error that stops the run) or rerouted: first to the cheapest VE ordering that
+//fits , and when no exact engine fits to the likelihood weighting sampler (algorithm 5) if its samples fit the time budget.
+public class CostPlanner {
+    //the orderings a rerouted query may get , after the ordering of the run.
+    private static final String[] CANDIDATE_ORDERINGS = {"min-fill", "weighted-min-fill", "min-degree", "min-size", "product", "lexicographic"};
+
+    private final long maxCells;
+    private final long maxOperations;
+    private final boolean reroute;
+    private final String ordering;
+    private final int samples;
+
+    //constructor
+    public CostPlanner(long maxCells, long maxOperations, boolean reroute, String ordering, int samples) {
+        this.maxCells = maxCells;
+        this.maxOperations = maxOperations;
+        this.reroute = reroute;
+        this.ordering = ordering;
+        this.samples = samples;
+    }
+
+    //the planner of the run , or null when it has no budget.
+    public static CostPlanner forOptions(RunOptions options) {
+        if (options.getMaxCells() == 0 && options.getMaxOperations() == 0) {
+            return null;
+        }
+        return new CostPlanner(options.getMaxCells(), options.getMaxOperations(), options.isReroute(), options.getOrdering(),
+                options.getSamples());
+    }
+
+    //choosing the engine of the query , the query keeps its algorithm when it fits the budgets.
+    public QueryPlan plan(Query query, BayesianNetwork network) {
+        int type = query.getAlgorithmType();
+        if (type < 1 || type > 3 || query.isJointQuery() || !knownVariables(query, network)
+                || BayesianAlgorithm.extractableCPT(query, network) != -1) {
+            //nothing to estimate , the answer is a lookup or the algorithm reports the bad query itself.
+            return QueryPlan.unplanned(type);
+        }
+        int[] evidence = network.encode(query.getEvidence());
+        int[] knownAssignment = evidence.clone();
+        network.encodeInto(query.getQuery(), knownAssignment);
+        double[] own;
+        if (type == 1) {
+            own = enumerationEstimate(query, network, knownAssignment);
+        } else {
+            EliminationOrdering ownOrdering = type == 2 ? new LexicographicOrdering() : EliminationOrdering.forName(ordering);
+            own = eliminationEstimate(ownOrdering, query, network, evidence, knownAssignment);
+        }
+        if (fits(own)) {
+            return new QueryPlan(type, null, null, toLong(own[0]), toLong(own[1]));
+        }
+        if (!reroute) {
+            throw overBudget(query, own);
+        }
+        //the cheapest ordering that fits , on a tie the earlier one.
+        String bestOrdering = null;
+        double[] best = null;
+        Set<String> candidates = new LinkedHashSet<>();
+        candidates.add(ordering);
+        candidates.addAll(Arrays.asList(CANDIDATE_ORDERINGS));
+        for (String name : candidates) {
+            double[] estimate = eliminationEstimate(EliminationOrdering.forName(name), query, network, evidence, knownAssignment);
+            if (fits(estimate) && (best == null || estimate[1] < best[1])) {
+                best = estimate;
+                bestOrdering = name;
+            }
+        }
+        if (best != null) {
+            return new QueryPlan(3, bestOrdering, type + "->3:" + bestOrdering, toLong(best[0]), toLong(best[1]));
+        }
+        //the sampler keeps one assignment per sample , its operations are a draw of every relevant variable per sample.
+        boolean[] ancestors = BayesianAlgorithm.getAncestors(network, knownAssignment);
+        int relevant = 0;
+        for (boolean ancestor : ancestors) {
+            if (ancestor) relevant++;
+        }
+        double[] sampling = {0, (double) samples * relevant};
+        if (fits(sampling)) {
+            return new QueryPlan(5, null, type + "->5", 0, toLong(sampling[1]));
+        }
+        throw overBudget(query, own);
+    }
+
+    //the largest factor and the operations of the enumeration , the factor is 0 since it builds none.
+    private static double[] enumerationEstimate(Query query, BayesianNetwork network, int[] knownAssignment) {
+        double leaves = 1;
+        for (int cpt = 0; cpt < network.getCPTCount(); cpt++) {
+            int variable = network.getCPTVariable(cpt);
+            if (knownAssignment[variable] == -1) leaves *= network.getCardinality(variable);
+        }
+        double sums = 1;
+        for (String name : query.getQuery().keySet()) {
+            sums *= network.getCardinality(network.getId(name));
+        }
+        return new double[]{0, sums * leaves * network.getCPTCount()};
+    }
+
+    //the largest joined factor and the operations of VE by the ordering , on the factors VE would start from.
+    private static double[] eliminationEstimate(EliminationOrdering ordering, Query query, BayesianNetwork network,
+                                                int[] evidence, int[] knownAssignment) {
+        boolean[] relevant = BayesianAlgorithm.getAncestors(network, knownAssignment);
+        List<Factor> shapes = new ArrayList<>();
+        double largest = 0;
+        for (int cpt = 0; cpt < network.getCPTCount(); cpt++) {
+            if (!relevant[network.getCPTVariable(cpt)]) continue;
+            //the restricted CPT , without the evidence variables (a factor left without variables is pruned by VE).
+            int[] scope = network.getCPTScope(cpt);
+            int[] variables = new int[scope.length];
+            int count = 0;
+            for (int variable : scope) {
+                if (evidence[variable] == -1) variables[count++] = variable;
+            }
+            if (count == 0) continue;
+            variables = Arrays.copyOf(variables, count);
+            Arrays.sort(variables);
+            shapes.add(Factor.shape(network, variables));
+            largest = Math.max(largest, cells(network, variables));
+        }
+        List<Integer> hiddenVariables = VariableElimination.hiddenVariables(query, network, relevant);
+        double operations = 0;
+        while (!hiddenVariables.isEmpty()) {
+            int hidden = ordering.chooseNext(hiddenVariables, shapes);
+            hiddenVariables.remove(Integer.valueOf(hidden));
+            List<Factor> related = new ArrayList<>();
+            for (Factor shape : shapes) {
+                if (shape.mentions(hidden)) related.add(shape);
+            }
+            shapes.removeAll(related);
+            if (related.isEmpty()) continue;
+            int[] joined = related.get(0).getVariables();
+            for (int i = 1; i < related.size(); i++) {
+                joined = VariableElimination.union(joined, related.get(i).getVariables());
+            }
+            double size = cells(network, joined);
+            largest = Math.max(largest, size);
+            //the joins of the related factors and the sum out , about one operation per joined cell for each.
+            operations += size * related.size();
+            int[] remaining = new int[joined.length - 1];
+            int position = 0;
+            for (int variable : joined) {
+                if (variable != hidden) remaining[position++] = variable;
+            }
+            shapes.add(Factor.shape(network, remaining));
+        }
+        //the last join of the factors that are left and the normalization.
+        int[] last = new int[0];
+        for (Factor shape : shapes) {
+            last = VariableElimination.union(last, shape.getVariables());
+        }
+        double size = cells(network, last);
+        largest = Math.max(largest, size);
+        operations += size * Math.max(shapes.size(), 1);
+        return new double[]{largest, operations};
+    }
+
+    //the number of cells of a table over the variables , as a double so a huge table doesn't overflow.
+    private static double cells(BayesianNetwork network, int[] variables) {
+        double res = 1;
+        for (int variable : variables) {
+            res *= network.getCardinality(variable);
+        }
+        return res;
+    }
+
+    private boolean fits(double[] estimate) {
+        return (maxCells == 0 || estimate[0] <= maxCells) && (maxOperations == 0 || estimate[1] <= maxOperations);
+    }
+
+    private static boolean knownVariables(Query query, BayesianNetwork network) {
+        for (Map<String, String> assignment : Arrays.asList(query.getQuery(), query.getEvidence())) {
+            for (String name : assignment.keySet()) {
+                if (network.getId(name) == -1) return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toLong(double value) {
+        return value >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) value;
+    }
+
+    private RuntimeException overBudget(Query query, double[] estimate) {
+        return new RuntimeException(String.format("Error: the query %s is over the budget , estimated largest factor %.0f cells"
+                + " and %.0f operations", query.toString().trim(), estimate[0], estimate[1]));
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.*;
+
+//a cache of elimination orders , one per network for the lifetime of the network.
+//the order that VE picks depends only on which variables are the query and which are the evidence (and on the ordering rule) ,
+//never on their outcomes , so every query with the same signature can reuse the order and skip the ordering entirely.
+//the cache keeps the most recently used orders up to a fixed capacity.
+public class EliminationOrderCache {
+    private static final int CAPACITY = 4096;
+    //the caches by network , the network is compared by identity.
+    private static final Map<BayesianNetwork, EliminationOrderCache> CACHES = new WeakHashMap<>();
+
+    private final LinkedHashMap<String, int[]> orders = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    private long hits = 0;
+    private long misses = 0;
+
+    //returns the cache of the network , creating it on the first call.
+    public static EliminationOrderCache forNetwork(BayesianNetwork network) {
+        synchronized (CACHES) {
+            EliminationOrderCache cache = CACHES.get(network);
+            if (cache == null) {
+                cache = new EliminationOrderCache();
+                CACHES.put(network, cache);
+            }
+            return cache;
+        }
+    }
+
+    //the signature of a query , for example "heuristic|q=3|e=1,7" , the assignment arrays are indexed by id (-1 is unassigned).
+    public static String signature(String ordering, int[] queryAssignment, int[] evidence) {
+        StringBuilder sb = new StringBuilder(ordering).append("|q=");
+        appendAssigned(sb, queryAssignment);
+        sb.append("|e=");
+        appendAssigned(sb, evidence);
+        return sb.toString();
+    }
+
+    //appending the ids that are assigned in the array in ascending order.
+    private static void appendAssigned(StringBuilder sb, int[] assignment) {
+        boolean isFirst = true;
+        for (int id = 0; id < assignment.length; id++) {
+            if (assignment[id] == -1) continue;
+            if (!isFirst) sb.append(',');
+            isFirst = false;
+            sb.append(id);
+        }
+    }
+
+    //returns the stored order or null , the order is shared and must not be modified.
+    public synchronized int[] get(String signature) {
+        int[] order = orders.get(signature);
+        if (order == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return order;
+    }
+
+    public synchronized void put(String signature, int[] order) {
+        orders.put(signature, order);
+    }
+
+    //getters for the statistics.
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return orders.size();
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.List;
+
+//the rule that picks the next hidden variable to eliminate in variable elimination (a strategy , VE gets one in its constructor).
+//the hidden variables come in the order of VariableElimination.hiddenVariables and the factors are the current factors of the query (after the restriction).
+//the implementations are stateless so one object can be shared by all the algorithm objects and threads.
+public interface EliminationOrdering {
+    //the name of the rule , it is used in the options and in the elimination order cache key.
+    String getName();
+
+    //returns the next variable to eliminate , one of the hidden variables.
+    int chooseNext(List<Integer> hiddenVariables, List<Factor> factors);
+
+    //the ordering by its option name.
+    static EliminationOrdering forName(String name) {
+        switch (name) {
+            case "lexicographic":
+                return new LexicographicOrdering();
+            case "product":
+                return new ProductSizeOrdering();
+            case "min-degree":
+                return new MinDegreeOrdering();
+            case "min-fill":
+                return new MinFillOrdering();
+            case "weighted-min-fill":
+                return new WeightedMinFillOrdering();
+            case "min-size":
+                return new MinSizeOrdering();
+            default:
+                throw new IllegalArgumentException("Error: unknown elimination ordering " + name);
+        }
+    }
+}
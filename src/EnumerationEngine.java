@@ -0,0 +1,201 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//the enumeration of the simple inference , summing the joint probability over every assignment of the hidden variables.
+//instead of multiplying all the CPTs again at every leaf , the hidden variables are assigned in a topological order and
+//every CPT is multiplied in at the depth where its last variable gets assigned , so the product of the CPTs that are
+//already fully assigned is passed down the recursion and a leaf only returns it.
+//the operation counts are the ones of the plain enumeration , every leaf counts the n - 1 multiplications of the joint
+//probability and every sum counts its additions , so the counts do not depend on the engine.
+//the probability is the same sum , but the product of a leaf is formed in the topological order of the depths and not
+//in the CPT order , so the rounding of the doubles can differ and the printed probability may move in its last decimal.
+//a branch whose partial product is 0 is not walked , its leaves and additions are counted without visiting them.
+//the parallel mode splits the space by the outcomes of the first hidden variables into fork/join tasks ,
+//every task counts on its own and the children are summed and merged by the outcome order , so the probability and
+//the counts are exactly the ones of the sequential sum.
+public class EnumerationEngine {
+    private final BayesianNetwork network;
+    private final int[] order; // the hidden variables in topological order
+    private final int[][] cptsAtDepth; // the CPTs that become fully assigned when the variable at depth d - 1 is assigned
+    private final long[] leavesBelow; // the number of leaves under a node at depth d
+    private final int leafMultiplications;
+    private final Counts counts = new Counts();
+
+    //constructor , the assigned variables of the pattern (query and evidence) are fixed and the hidden ones are summed.
+    //the hidden variables may come in any order.
+    public EnumerationEngine(BayesianNetwork network, int[] assignedPattern, int[] hiddenVariables) {
+        this.network = network;
+        this.order = hiddenVariables.clone();
+        Integer[] boxed = new Integer[order.length];
+        for (int i = 0; i < order.length; i++) boxed[i] = order[i];
+        Arrays.sort(boxed, Comparator.comparingInt(network::getTopologicalRank));
+        for (int i = 0; i < order.length; i++) order[i] = boxed[i];
+        int[] depthOf = new int[network.size()];
+        Arrays.fill(depthOf, -1);
+        for (int i = 0; i < order.length; i++) depthOf[order[i]] = i + 1;
+        //a CPT is placed at the deepest depth of its variables , the assigned ones are at depth 0.
+        //a variable that is neither assigned nor hidden never gets an outcome , so its CPTs wait for the leaf
+        //(where the lookup reports the missing assignment , as the plain enumeration does).
+        List<List<Integer>> placed = new ArrayList<>();
+        for (int d = 0; d <= order.length; d++) placed.add(new ArrayList<>());
+        for (int c = 0; c < network.getCPTCount(); c++) {
+            int depth = 0;
+            for (int variable : network.getCPTScope(c)) {
+                if (depthOf[variable] != -1) depth = Math.max(depth, depthOf[variable]);
+                else if (assignedPattern[variable] == -1) depth = order.length;
+            }
+            placed.get(depth).add(c);
+        }
+        this.cptsAtDepth = new int[order.length + 1][];
+        for (int d = 0; d <= order.length; d++) {
+            cptsAtDepth[d] = new int[placed.get(d).size()];
+            for (int i = 0; i < cptsAtDepth[d].length; i++) cptsAtDepth[d][i] = placed.get(d).get(i);
+        }
+        this.leavesBelow = new long[order.length + 1];
+        leavesBelow[order.length] = 1;
+        for (int d = order.length - 1; d >= 0; d--) {
+            leavesBelow[d] = leavesBelow[d + 1] * network.getCardinality(order[d]);
+        }
+        this.leafMultiplications = Math.max(network.getCPTCount() - 1, 0);
+    }
+
+    //the sum of the joint probability over all the outcomes of the hidden variables , with the assigned variables of the array.
+    //the hidden variables must be unassigned (-1) in the array , they are restored to -1 at the end.
+    public double sum(int[] assignment) {
+        Counts local = new Counts();
+        double sum = sumFrom(0, multiplyAt(0, 1.0, assignment), assignment, local);
+        counts.add(local);
+        return sum;
+    }
+
+    //the same sum as a fork/join task , the assignment is copied so the task can run next to other sums of this engine.
+    //the space is split by the outcomes of the first hidden variables until there are about 4 tasks per worker of the pool.
+    public RecursiveTask<Double> sumTask(int[] assignment, ForkJoinPool pool) {
+        int splitDepth = 0;
+        while (splitDepth < order.length && leavesBelow[0] / leavesBelow[splitDepth] < 4L * pool.getParallelism()) {
+            splitDepth++;
+        }
+        int[] copy = assignment.clone();
+        return new SumTask(splitDepth, 0, multiplyAt(0, 1.0, copy), copy, true);
+    }
+
+    private double sumFrom(int depth, double partial, int[] assignment, Counts local) {
+        if (depth == order.length) {
+            local.multiplications += leafMultiplications;
+            return partial;
+        }
+        if (partial == 0) {
+            //every leaf below is 0 , counting what the plain enumeration would have counted.
+            local.multiplications += (int) (leavesBelow[depth] * leafMultiplications);
+            local.additions += (int) (leavesBelow[depth] - 1);
+            return 0;
+        }
+        int variable = order[depth];
+        double sum = 0.0;
+        for (int outcome = 0; outcome < network.getCardinality(variable); outcome++) {
+            assignment[variable] = outcome;
+            double currentValue = sumFrom(depth + 1, multiplyAt(depth + 1, partial, assignment), assignment, local);
+            if (outcome == 0) {
+                sum = currentValue;
+            } else {
+                sum += currentValue;
+                local.additions++;
+            }
+        }
+        assignment[variable] = -1;
+        return sum;
+    }
+
+    //multiplying the partial product by the CPTs that are placed at the depth.
+    private double multiplyAt(int depth, double partial, int[] assignment) {
+        for (int c : cptsAtDepth[depth]) {
+            partial *= network.getProbability(c, assignment);
+        }
+        return partial;
+    }
+
+    //the number of hidden assignments one sum walks.
+    public long getLeafCount() {
+        return leavesBelow[0];
+    }
+
+    //the hidden variables in the order they are summed.
+    public int[] getOrder() {
+        return order;
+    }
+
+    //the counts of all the sums since the engine was created.
+    public int getAdditionCount() {
+        synchronized (counts) {
+            return counts.additions;
+        }
+    }
+
+    public int getMultiplicationCount() {
+        synchronized (counts) {
+            return counts.multiplications;
+        }
+    }
+
+    //the counters of one sum or one task , merged into the engine when the sum is done.
+    private static final class Counts {
+        private int additions = 0;
+        private int multiplications = 0;
+
+        private void add(Counts other) {
+            synchronized (this) {
+                additions += other.additions;
+                multiplications += other.multiplications;
+            }
+        }
+    }
+
+    //the sum under one prefix of outcomes , above the split depth it forks a child per outcome of the next variable.
+    private final class SumTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+        private final int splitDepth;
+        private final int depth;
+        private final double partial;
+        private final int[] assignment;
+        private final boolean root;
+        private final Counts local = new Counts();
+
+        private SumTask(int splitDepth, int depth, double partial, int[] assignment, boolean root) {
+            this.splitDepth = splitDepth;
+            this.depth = depth;
+            this.partial = partial;
+            this.assignment = assignment;
+            this.root = root;
+        }
+
+        @Override
+        protected Double compute() {
+            double sum;
+            if (depth >= splitDepth || partial == 0) {
+                sum = sumFrom(depth, partial, assignment, local);
+            } else {
+                int variable = order[depth];
+                List<SumTask> children = new ArrayList<>();
+                for (int outcome = 0; outcome < network.getCardinality(variable); outcome++) {
+                    int[] childAssignment = assignment.clone();
+                    childAssignment[variable] = outcome;
+                    children.add(new SumTask(splitDepth, depth + 1, multiplyAt(depth + 1, partial, childAssignment), childAssignment, false));
+                }
+                invokeAll(children);
+                //summing by the outcome order , the same additions in the same order as the sequential sum.
+                sum = children.get(0).join();
+                local.add(children.get(0).local);
+                for (int i = 1; i < children.size(); i++) {
+                    sum += children.get(i).join();
+                    local.additions++;
+                    local.add(children.get(i).local);
+                }
+            }
+            if (root) {
+                counts.add(local);
+            }
+            return sum;
+        }
+    }
+}
@@ -1,4 +1,4 @@
-import java.io.BufferedReader;
+
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -6,24 +6,31 @@ import java.util.List;
 //main class to run the program.
 public class Ex1 {
     public static void main(String[] args) {
+        //the optional command line options , without them the run is the same as always.
+        RunOptions options = RunOptions.parse(args);
         //calling the extractor class to extract the data from the xml file , default is "src/input.xml".
         Extractor extractor = new Extractor();
+        extractor.setStreaming(options.isStreamingParser());
+        if (options.isStream()) {
+            runStreaming(extractor, options);
+            return;
+        }
         extractor.parseInput();
-        List<CPT> CPTs = extractor.getFactors();
+        BayesianNetwork network = extractor.getNetwork();
         List<Query> queries = extractor.getQueries();
+        //repeated queries are answered from the cache instead of running the algorithm again.
+        //on a miss the worker uses its own algorithm object of the query type (created by the factory design pattern).
+        QueryCache cache = new QueryCache(options.getCacheSize());
+        //the queries are spread over the worker threads , the results come back in the input order.
+        BatchExecutor executor = new BatchExecutor(network, cache, options);
+        List<QueryResult> results = executor.run(queries);
         try {
             //creating the output file and writing the results to it in the format specified in the ex1 file.
             BufferedWriter writer = new BufferedWriter(new FileWriter("output.txt"));
-            //for each Query (contains the query  , evidence and algorithm type) we create the algorithm object and call the calculateProbability method.
-            for(int i = 0; i < queries.size(); i++) {
-                Query query = queries.get(i);
-                //using factory design pattern to create the algorithm object based on the algorithm type.
-                BayesianAlgorithm algorithmFactory = AlgorithmFactory.createAlgorithm(query.getAlgorithmType());
-                //this method is assigning values to the probability , addition and multiplication attributes.
-                algorithmFactory.calculateProbability(query, CPTs);
-                writer.write(String.format("%.5f,%d,%d", algorithmFactory.getProbability(), algorithmFactory.getAdditionCount(), algorithmFactory.getMultiplicationCount()));
+            for(int i = 0; i < results.size(); i++) {
+                writer.write(results.get(i).toOutputLine());
                 //for the last query we don't need to add a new line.
-                if(i<queries.size()-1){
+                if(i<results.size()-1){
                     writer.write("\n");
                 }
             }
@@ -31,7 +38,44 @@ public class Ex1 {
         }catch (IOException e) {
             throw new RuntimeException(e);
         }
+        //the metrics of every query in a side file , when it was asked for.
+        if (options.getMetricsFile() != null) {
+            try (MetricsWriter metrics = new MetricsWriter(options.getMetricsFile())) {
+                for (int i = 0; i < results.size(); i++) {
+                    metrics.write(i, queries.get(i), results.get(i));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        //the induced width and the largest factor of every query that built factors.
+        if (options.isPrintOrderStats()) {
+            for (int i = 0; i < results.size(); i++) {
+                String stats = results.get(i).toStatsLine();
+                if (stats == null) continue;
+                System.out.println(queries.get(i).toString().trim() + " " + stats);
+            }
+        }
+        if (options.isPrintCacheStats()) {
+            System.out.println(cache);
+        }
+
 
+    }
 
+    //the streaming mode , the queries are parsed , answered and written at the same time instead of one stage after the other.
+    private static void runStreaming(Extractor extractor, RunOptions options) {
+        extractor.parseInputNetwork();
+        QueryCache cache = new QueryCache(options.getCacheSize());
+        BatchExecutor executor = new BatchExecutor(extractor.getNetwork(), cache, options);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter("output.txt"));
+             MetricsWriter metrics = options.getMetricsFile() == null ? null : new MetricsWriter(options.getMetricsFile())) {
+            new QueryPipeline(extractor, executor, options).run(writer, metrics);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (options.isPrintCacheStats()) {
+            System.out.println(cache);
+        }
     }
 }
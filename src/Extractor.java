@@ -7,6 +7,10 @@ import org.w3c.dom.Document;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -15,10 +19,15 @@ import java.util.regex.Pattern;
 //this class is responsible for parsing the input file and the xml file , then the attributes of it its the
 //map from the name of a var to its object , the CPTs , the queries and the path to the xml file.
 public class Extractor {
+    //the form of a query , P(query) or P(query|evidence) , compiled once since the streaming mode parses millions of lines.
+    private static final Pattern QUERY_PATTERN = Pattern.compile("P\\(([^|]*)(?:\\|([^)]*))?\\)");
     private final Map<String, Variable> variablesLookup;
     private final List<CPT> CPTS;
     private final List<Query> queries;
     private String netPath;
+    private BayesianNetwork network;
+    //true for the streaming (StAX) parser and false for the DOM parser , both build the same network.
+    private boolean streaming = true;
 
     //constructor
     public Extractor() {
@@ -27,21 +36,41 @@ public class Extractor {
         this.queries = new ArrayList<>();
     }
 
+    //choosing the parser of the network file , it must be called before parsing.
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     //encapsulates method that contains the main methods of first get the file path to the XML and parse the network,
     //and then parse the queries.
     public void parseInput() {
+        parseInputNetwork();
+        parseQueries();
+    }
+
+    //parsing only the network that the input file names , the queries are read later by openQueries (the streaming mode).
+    public void parseInputNetwork() {
         this.netPath = getNetPath();
         parseXMLNetwork();
-        parseQueries();
+    }
+
+    //a reader of the input file that is already past the first line , so every line it returns is a query.
+    public BufferedReader openQueries() throws IOException {
+        //_for_big_net
+        BufferedReader reader = new BufferedReader(new FileReader("input.txt"));
+        reader.readLine();
+        return reader;
+    }
+
+    //parsing only a network file , for callers that build their queries themselves (benchmarks , tools).
+    public void parseNetwork(String netPath) {
+        this.netPath = netPath;
+        parseXMLNetwork();
     }
 
     //wraps the parsing of the queries.
     private void parseQueries() {
-        //_for_big_net
-        String inputPath = "input.txt";
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(inputPath));
-            reader.readLine();
+        try (BufferedReader reader = openQueries()) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.trim().isEmpty()) {
@@ -54,15 +83,14 @@ public class Extractor {
         }
     }
 
-    //main method that parses the query from the input file.
-    private Query parseQuery(String line) {
+    //main method that parses the query from a line of the input file.
+    public Query parseQuery(String line) {
         //splitting the txt line to 2 parts the query and the algorithm type  , not all the queries have an algorithm type.
         int closingParenthesisIndex = line.indexOf(")") + 1;
         String queryPart = line.substring(0, closingParenthesisIndex);
         int algorithmType = getAlgorithmType(line, closingParenthesisIndex);
         //using regular expression to extract the variables and their assignments from the query part.
-        Pattern pattern = Pattern.compile("P\\(([^|]*)(?:\\|([^)]*))?\\)");
-        Matcher matcher = pattern.matcher(queryPart);
+        Matcher matcher = QUERY_PATTERN.matcher(queryPart);
         //if the query is in the expected format:
         if (matcher.find()) {
             //spitting the query part to get query variable and the evidence variable.
@@ -126,6 +154,19 @@ public class Extractor {
     //this method parses the xml file and creates the Variable objects , the CPT objects and Map.
     //serves as a wrapper for the parsing methods.
     private void parseXMLNetwork() {
+        //a compiled network file (see CompiledNetworkFile) is mapped instead of parsed.
+        if (CompiledNetworkFile.isCompiled(netPath)) {
+            try {
+                network = CompiledNetworkFile.load(netPath);
+            } catch (IOException e) {
+                throw new RuntimeException("Error: couldn't load the compiled network " + e.getMessage(), e);
+            }
+            return;
+        }
+        if (streaming) {
+            parseXMLNetworkStreaming();
+            return;
+        }
         try {
             //using this Library to parse the xml file since there are a lot of Libraries that uses DOM (JS).
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -136,6 +177,8 @@ public class Extractor {
             //assuming the network is first declaring the variables and their outcomes and then their parents and their conditional probabilities.
             parseFirstHalve(doc);
             parseSecondHalve(doc);
+            //compiling the parsed CPTs once , all the queries share the compiled network.
+            network = new BayesianNetwork(CPTS);
 
         } catch (ParserConfigurationException | IOException | SAXException e) {
             throw new RuntimeException(e);
@@ -143,6 +186,121 @@ public class Extractor {
 
     }
 
+    //this method parses the xml file in a single forward pass (StAX) without building a document in memory.
+    //the variables are created as they end , the definitions are kept until the end of the file since a definition may name a
+    //variable that is declared after it (the DOM parser reads all the variables first).
+    //the tags are read the same way as in the DOM parser: the first NAME , FOR and TABLE of their element , every OUTCOME and GIVEN.
+    private void parseXMLNetworkStreaming() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(netPath))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            List<String> definitionNames = new ArrayList<>();
+            List<List<String>> definitionParents = new ArrayList<>();
+            List<double[]> definitionTables = new ArrayList<>();
+            boolean inVariable = false;
+            String name = null;
+            List<String> outcomes = new ArrayList<>();
+            boolean inDefinition = false;
+            String forName = null;
+            List<String> givens = new ArrayList<>();
+            double[] table = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "VARIABLE":
+                            inVariable = true;
+                            name = null;
+                            outcomes = new ArrayList<>();
+                            break;
+                        case "NAME":
+                            if (inVariable && name == null) name = reader.getElementText().trim();
+                            break;
+                        case "OUTCOME":
+                            if (inVariable) outcomes.add(reader.getElementText());
+                            break;
+                        case "DEFINITION":
+                            inDefinition = true;
+                            forName = null;
+                            givens = new ArrayList<>();
+                            table = null;
+                            break;
+                        case "FOR":
+                            if (inDefinition && forName == null) forName = reader.getElementText().trim();
+                            break;
+                        case "GIVEN":
+                            if (inDefinition) givens.add(reader.getElementText());
+                            break;
+                        case "TABLE":
+                            if (inDefinition && table == null) table = parseTableStreaming(reader, expectedTableSize(forName, givens));
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (reader.getLocalName().equals("VARIABLE") && inVariable) {
+                        Variable parsed = new Variable(name == null ? "" : name, outcomes);
+                        variablesLookup.put(parsed.getName(), parsed);
+                        inVariable = false;
+                    } else if (reader.getLocalName().equals("DEFINITION") && inDefinition) {
+                        definitionNames.add(forName == null ? "" : forName);
+                        definitionParents.add(givens);
+                        definitionTables.add(table == null ? new double[0] : table);
+                        inDefinition = false;
+                    }
+                }
+            }
+            reader.close();
+            //building the CPTs by the order of the definitions , unknown variables are skipped as in the DOM parser.
+            for (int i = 0; i < definitionNames.size(); i++) {
+                Variable cptVariable = variablesLookup.get(definitionNames.get(i));
+                if (cptVariable == null) continue;
+                List<Variable> parents = new ArrayList<>();
+                for (String parentName : definitionParents.get(i)) {
+                    Variable parentVariable = variablesLookup.get(parentName);
+                    if (parentVariable != null) {
+                        parents.add(parentVariable);
+                    }
+                }
+                CPTS.add(new CPT(cptVariable, parents, definitionTables.get(i)));
+            }
+            //compiling the parsed CPTs once , all the queries share the compiled network.
+            network = new BayesianNetwork(CPTS);
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //reading the text of the TABLE element chunk by chunk into the table parser , the reader ends on the closing tag.
+    private double[] parseTableStreaming(XMLStreamReader reader, int expectedSize) throws XMLStreamException {
+        TableParser parser = new TableParser(expectedSize);
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                parser.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return parser.finish();
+    }
+
+    //the size of the table by the variables that were already declared , 0 if one of them is not known yet.
+    private int expectedTableSize(String forName, List<String> givens) {
+        Variable variable = variablesLookup.get(forName);
+        if (variable == null) return 0;
+        int size = variable.getOutcomesCount();
+        for (String parentName : givens) {
+            Variable parent = variablesLookup.get(parentName);
+            if (parent != null) size *= parent.getOutcomesCount();
+        }
+        return size;
+    }
+
     //this method parses the first half of the xml file which contains the variables and their outcomes.
     private void parseFirstHalve(Document doc) {
         //tree structure of the xml file.
@@ -151,13 +309,13 @@ public class Extractor {
         for (int i = 0; i < variablesList.getLength(); i++) {
             Element varElement = (Element) variablesList.item(i);
             String name = extractText(varElement, "NAME");
-            Variable variable = new Variable(name);
             NodeList outcomesList = varElement.getElementsByTagName("OUTCOME");
+            List<String> outcomes = new ArrayList<>();
             for (int j = 0; j < outcomesList.getLength(); j++) {
                 Element outcomeElement = (Element) outcomesList.item(j);
-                String outcome = outcomeElement.getTextContent();
-                variable.addOutcome(outcome);
+                outcomes.add(outcomeElement.getTextContent());
             }
+            Variable variable = new Variable(name, outcomes);
             //before starting new iteration we adding the string name to the map with the variable object we just created.
             variablesLookup.put(name, variable);
         }
@@ -174,20 +332,18 @@ public class Extractor {
             String variableName = extractText(cptElement, "FOR");
             Variable variable = variablesLookup.get(variableName);
             if (variable != null) {
-                CPT CPT = new CPT(variable);
+                List<Variable> parents = new ArrayList<>();
                 NodeList parentsList = cptElement.getElementsByTagName("GIVEN");
                 for (int j = 0; j < parentsList.getLength(); j++) {
                     Element parentElement = (Element) parentsList.item(j);
                     String parentName = parentElement.getTextContent();
                     Variable parentVariable = variablesLookup.get(parentName);
                     if (parentVariable != null) {
-                        CPT.addParent(parentVariable);
+                        parents.add(parentVariable);
                     }
                 }
                 String probabilityTable = extractText(cptElement, "TABLE");
-                List<Double> probabilities = parseTable(probabilityTable);
-                CPT.setProbabilities(probabilities);
-                CPTS.add(CPT);
+                CPTS.add(new CPT(variable, parents, TableParser.parse(probabilityTable, 0)));
             }
         }
     }
@@ -200,19 +356,14 @@ public class Extractor {
             return "";
         }
     }
-    //creating an array of string with regex (spaces) and then parsing it to double arrayList.
-    private List<Double> parseTable(String table) {
-        String[] values = table.split("\\s+");
-        List<Double> res = new ArrayList<>();
-        for (String value : values) {
-            res.add(Double.parseDouble(value));
-        }
-        return res;
-    }
-
     //getters
     public List<CPT> getFactors() {
-        return CPTS;
+        //a compiled network has no parsed CPTs , the network builds them.
+        return network != null && CPTS.isEmpty() ? network.getCPTs() : CPTS;
+    }
+
+    public BayesianNetwork getNetwork() {
+        return network;
     }
 
     public void printFactors() {
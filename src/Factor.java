@@ -1,111 +1,201 @@
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+
 //a class that represents a factor in a Bayesian network , for VE algorithm.
+//the variables are the int ids of the compiled network in ascending order (which is also the order of their names).
+//the table is a flat double array , the last variable changes the fastest (the same layout as the CPT tables).
+//for every variable we keep its cardinality and its stride so an entry can be addressed by an integer index.
+//a sparse factor keeps only the entries that are not 0 , their indexes in ascending order and their values (see FactorKernels
+//for the sparse join , sum out and restriction). VE chooses the format of every factor it makes by its density.
 public class Factor {
-    private List<Variable> variables; // list of all variables
-    private List<Double> probabilities; // probabilities list
-
-    // constructor
-    public Factor(List<Variable> variables, List<Double> probabilities) {
-        //deep copying the variables list and sorting it alphabetically.
-        List<Variable> copied = new ArrayList<>();
-        for (Variable v : variables) {
-            Variable copy = new Variable(v.getName());
-            for (String outcome : v.getOutcomes()) {
-                copy.addOutcome(outcome);
-            }
-            copied.add(copy);
+    private final BayesianNetwork network; // the shared metadata of the variables
+    private final int[] variables; // the ids of the variables , sorted
+    private final int[] cardinalities; // number of outcomes of each variable , by the order of the variables
+    private final int[] strides; // how much the index moves when the outcome of the variable moves by one
+    private final int size; // the number of entries of the full table
+    private final double[] values; // the probabilities table , or the entries that are not 0 for a sparse factor
+    private final int[] indexes; // the ascending indexes of the entries that are not 0 , null for a dense factor
+
+    // constructor , the variables must already be sorted so nothing is copied or sorted here.
+    public Factor(BayesianNetwork network, int[] variables, double[] values) {
+        this(network, variables, values, null, true);
+    }
+
+    private Factor(BayesianNetwork network, int[] variables, double[] values, int[] indexes, boolean hasTable) {
+        this.network = network;
+        this.variables = variables;
+        //precomputing the strides from the last variable to the first one.
+        this.cardinalities = new int[variables.length];
+        this.strides = new int[variables.length];
+        int stride = 1;
+        for (int i = variables.length - 1; i >= 0; i--) {
+            cardinalities[i] = network.getCardinality(variables[i]);
+            strides[i] = stride;
+            stride *= cardinalities[i];
         }
-        //local comparator to sort the variables list.
-        Collections.sort(copied, new Comparator<Variable>() {
-            @Override
-            public int compare(Variable v1, Variable v2) {
-                return v1.getName().compareTo(v2.getName());
-            }
-        });
-        this.variables = copied;
+        if (hasTable && indexes == null && values.length != stride) {
+            throw new IllegalArgumentException("Factor table has " + values.length + " entries but expected " + stride);
+        }
+        this.size = stride;
+        this.values = values;
+        this.indexes = indexes;
+    }
 
+    //a factor without a table , only its variables , for estimating the cost of an elimination before running it.
+    //the orderings only look at the variables and the cardinalities , reading the table of a shape is an error.
+    public static Factor shape(BayesianNetwork network, int[] variables) {
+        return new Factor(network, variables, null, null, false);
+    }
 
-        this.probabilities = new ArrayList<>(probabilities);
+    //a sparse factor , the indexes must be ascending and the values are the entries at them (every other entry is 0).
+    public static Factor sparse(BayesianNetwork network, int[] variables, int[] indexes, double[] values) {
+        if (indexes.length != values.length) {
+            throw new IllegalArgumentException("Sparse factor has " + indexes.length + " indexes but " + values.length + " values");
+        }
+        return new Factor(network, variables, values, indexes, true);
     }
 
+    //the same factor with the full table , the factor itself when it is already dense.
+    public Factor toDense() {
+        if (indexes == null) {
+            return this;
+        }
+        double[] table = new double[size];
+        for (int k = 0; k < indexes.length; k++) {
+            table[indexes[k]] = values[k];
+        }
+        return new Factor(network, variables, table);
+    }
+
+    //the same factor with only the entries that are not 0 , the factor itself when it is already sparse.
+    public Factor toSparse() {
+        if (indexes != null) {
+            return this;
+        }
+        checkTable();
+        int count = countNonZeros();
+        int[] nonZeroIndexes = new int[count];
+        double[] nonZeroValues = new double[count];
+        int k = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                nonZeroIndexes[k] = i;
+                nonZeroValues[k++] = values[i];
+            }
+        }
+        return sparse(network, variables, nonZeroIndexes, nonZeroValues);
+    }
+
+    //the number of entries that are not 0.
+    public int countNonZeros() {
+        if (indexes != null) {
+            return indexes.length;
+        }
+        checkTable();
+        int count = 0;
+        for (double value : values) {
+            if (value != 0) count++;
+        }
+        return count;
+    }
 
     // Getters
-    public List<Variable> getVariables() {
+    public BayesianNetwork getNetwork() {
+        return network;
+    }
+
+    public int[] getVariables() {
         return variables;
     }
 
-    public List<Double> getProbabilities() {
-        return probabilities;
+    //the table itself , callers that write into it (like normalization) are changing this factor.
+    //a sparse factor has no table , it should be read by getValue or by its entries (or turned dense first).
+    public double[] getValues() {
+        if (indexes != null) {
+            throw new IllegalStateException("Error: a sparse factor has no full table , call toDense first");
+        }
+        checkTable();
+        return values;
     }
-    //setter
-    public void setProbabilities(List<Double> probabilities) {
-        this.probabilities = probabilities;
+
+    public double getValue(int index) {
+        if (indexes == null) {
+            checkTable();
+            return values[index];
+        }
+        int k = Arrays.binarySearch(indexes, index);
+        return k < 0 ? 0 : values[k];
     }
 
-    //main method to find the index of the probability in the list of probabilities and return it.
-    //the same logic as the one in the CPT class.
-    public double getProbability(Map<String, String> assignment) {
-        int index = 0;
-        int multiplier = 1;
-        for (int i = variables.size() - 1; i >= 0; i--) {
-            Variable var = variables.get(i);
-            String value = assignment.get(var.getName());
-            //debugging.
-            if (value == null) {
-                System.out.println("missing assaignment for Variable" + var.getName());
-                return 0.0;
-            }
-            int outcomeIndex = var.getOutcomes().indexOf(value);
-            if (outcomeIndex == -1) {
-                System.out.println("invalid outcome for variable: " + var.getName() + ", value: " + value);
-                return 0.0;
-            }
+    public boolean isSparse() {
+        return indexes != null;
+    }
 
-            index += outcomeIndex * multiplier;
-            multiplier *= var.getOutcomesCount();
-        }
+    //the entries of a sparse factor , the ascending indexes and the values at them.
+    public int[] getNonZeroIndexes() {
+        return indexes;
+    }
+
+    public double[] getNonZeroValues() {
+        return values;
+    }
+
+    //the number of cells the factor keeps , the full table or only the entries that are not 0.
+    public int getStoredCells() {
+        checkTable();
+        return values.length;
+    }
 
-        if (index < 0 || index >= probabilities.size()) {
-            System.out.println("Index out of bounds: " + index + " for factor of size " + probabilities.size());
-            return 0.0;
+    //a shape has only its variables , so everything that reads the table fails on it.
+    private void checkTable() {
+        if (values == null) {
+            throw new IllegalStateException("Error: a shape factor has no table , it only has its variables");
         }
+    }
 
-        return probabilities.get(index);
+    public int getCardinality(int position) {
+        return cardinalities[position];
     }
 
-    // a recursive method to generate all possible assignments of the variables in the factor.
-    public List<Map<String, String>> generateAllAssignments() {
-        List<Map<String, String>> assignments = new ArrayList<>();
-        generateHelper(0, new HashMap<>(), assignments);
-        return assignments;
+    public int getStride(int position) {
+        return strides[position];
     }
-    //every call it creates a new assignment and adds it to the list of assignments.
-    private void generateHelper(int idx, Map<String, String> current, List<Map<String, String>> result) {
-        if (idx == variables.size()) {
-            result.add(new HashMap<>(current));
-            return;
+
+    //the position of the variable in this factor or -1 if the factor doesn't mention it.
+    public int indexOfVariable(int variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i] == variable) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+    public boolean mentions(int variable) {
+        return indexOfVariable(variable) != -1;
+    }
 
-        Variable var = variables.get(idx);
-        for (String outcome : var.getOutcomes()) {
-            current.put(var.getName(), outcome);
-            generateHelper(idx + 1, current, result);
-            current.remove(var.getName());
+    //main method to find the index of the probability in the table , the assignment array is indexed by variable id.
+    public int getIndex(int[] assignment) {
+        int index = 0;
+        for (int i = 0; i < variables.length; i++) {
+            index += assignment[variables[i]] * strides[i];
         }
+        return index;
     }
+
     //toString method to print the factor , debugging purposes.
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Factor with variables: ");
-        for (Variable var : variables) {
-            sb.append(var.getName()).append(" ");
+        for (int variable : variables) {
+            sb.append(network.getName(variable)).append(" ");
         }
         return sb.toString();
     }
+    //the number of entries of the full table , also for a sparse factor.
     public int getSize(){
-        return probabilities.size();
+        return size;
     }
 
 }
@@ -0,0 +1,512 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//the loops of the factor operations of VE , the product of two factors , the sum out of one variable and the two fused.
+//every kernel fills a range [from , to) of the output table , so a big output can be cut into ranges for fork/join workers.
+//an output entry only depends on the inputs and never on the other entries , so the parallel result is the same
+//to the last bit as the sequential one , and the operation counts (taken from the sizes by VE) don't change either.
+//the sparse kernels walk only the entries that are not 0 and make sparse factors. a skipped entry would have added 0 or
+//multiplied by 0 , and the sums are added in the same order of the outcomes , so their values are the dense ones.
+//they are cut into parts of their entries for the fork/join workers by the same threshold as the dense kernels.
+public class FactorKernels {
+    //the smallest range a worker gets , below it a task costs more than the loop.
+    private static final int MIN_CHUNK = 1 << 14;
+
+    //a kernel over a range of the output indexes.
+    public interface RangeKernel {
+        void apply(int from, int to);
+    }
+
+    //running the kernel over [0 , size) , on the fork/join pool when the threshold is on (more than 0) and the size reaches it.
+    public static void run(int size, int threshold, RangeKernel kernel) {
+        if (threshold <= 0 || size < threshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            kernel.apply(0, size);
+            return;
+        }
+        int chunk = Math.max(MIN_CHUNK, size / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        ForkJoinPool.commonPool().invoke(new RangeTask(kernel, 0, size, chunk));
+    }
+
+    //the product of two factors over the combined variables , the strides of a variable that is missing from an input are 0.
+    public static void product(double[] values1, int[] strides1, double[] values2, int[] strides2, int[] cardinalities,
+                               double[] output, int from, int to) {
+        int[] counter = new int[cardinalities.length];
+        int index1 = 0;
+        int index2 = 0;
+        //the odometer of the first output index of the range.
+        int rest = from;
+        for (int k = cardinalities.length - 1; k >= 0; k--) {
+            counter[k] = rest % cardinalities[k];
+            rest /= cardinalities[k];
+            index1 += counter[k] * strides1[k];
+            index2 += counter[k] * strides2[k];
+        }
+        for (int i = from; i < to; i++) {
+            output[i] = values1[index1] * values2[index2];
+            for (int k = cardinalities.length - 1; k >= 0; k--) {
+                counter[k]++;
+                index1 += strides1[k];
+                index2 += strides2[k];
+                if (counter[k] < cardinalities[k]) break;
+                counter[k] = 0;
+                index1 -= strides1[k] * cardinalities[k];
+                index2 -= strides2[k] * cardinalities[k];
+            }
+        }
+    }
+
+    //summing one variable out , the remaining variables are walked by their strides in the source and the eliminated one by its own.
+    public static void sumOut(double[] values, int[] sourceStrides, int[] cardinalities, int eliminatedCardinality,
+                              int eliminatedStride, double[] output, int from, int to) {
+        int[] counter = new int[cardinalities.length];
+        int base = 0;
+        int rest = from;
+        for (int k = cardinalities.length - 1; k >= 0; k--) {
+            counter[k] = rest % cardinalities[k];
+            rest /= cardinalities[k];
+            base += counter[k] * sourceStrides[k];
+        }
+        for (int i = from; i < to; i++) {
+            double sum = values[base];
+            for (int outcome = 1; outcome < eliminatedCardinality; outcome++) {
+                sum += values[base + outcome * eliminatedStride];
+            }
+            output[i] = sum;
+            for (int k = cardinalities.length - 1; k >= 0; k--) {
+                counter[k]++;
+                base += sourceStrides[k];
+                if (counter[k] < cardinalities[k]) break;
+                counter[k] = 0;
+                base -= sourceStrides[k] * cardinalities[k];
+            }
+        }
+    }
+
+    //the fused product and sum out , for every output entry and every outcome of the hidden variable the entries of the factors
+    //are multiplied by the join plan (step i multiplies the slots plan[i][0] and plan[i][1] into slot n + i) and the products are
+    //summed over the outcomes. the strides are by the output variables (0 when a factor doesn't mention one).
+    public static void sumProduct(double[][] tables, int[][] strides, int[] hiddenStrides, int[][] plan, int[] cardinalities,
+                                  int hiddenCardinality, double[] output, int from, int to) {
+        int n = tables.length;
+        int[] counter = new int[cardinalities.length];
+        int[] base = new int[n];
+        double[] slots = new double[n + plan.length];
+        int rest = from;
+        for (int k = cardinalities.length - 1; k >= 0; k--) {
+            counter[k] = rest % cardinalities[k];
+            rest /= cardinalities[k];
+            for (int j = 0; j < n; j++) base[j] += counter[k] * strides[j][k];
+        }
+        for (int i = from; i < to; i++) {
+            double sum = 0;
+            for (int outcome = 0; outcome < hiddenCardinality; outcome++) {
+                for (int j = 0; j < n; j++) {
+                    slots[j] = tables[j][base[j] + outcome * hiddenStrides[j]];
+                }
+                for (int step = 0; step < plan.length; step++) {
+                    slots[n + step] = slots[plan[step][0]] * slots[plan[step][1]];
+                }
+                double product = slots[slots.length - 1];
+                sum = outcome == 0 ? product : sum + product;
+            }
+            output[i] = sum;
+            for (int k = cardinalities.length - 1; k >= 0; k--) {
+                counter[k]++;
+                for (int j = 0; j < n; j++) base[j] += strides[j][k];
+                if (counter[k] < cardinalities[k]) break;
+                counter[k] = 0;
+                for (int j = 0; j < n; j++) base[j] -= strides[j][k] * cardinalities[k];
+            }
+        }
+    }
+
+    //the product of two factors over the sorted variables when one of them is sparse , a product of 0 is not kept.
+    //two sparse factors are merge joined by their entries , one sparse factor is walked by its entries and each is multiplied
+    //by the dense one over the variables it doesn't mention. a product whose output reaches the threshold is cut into parts
+    //of the walked entries for the fork/join workers.
+    public static Factor sparseProduct(Factor f1, Factor f2, int[] variables, int threshold) {
+        if (f1.isSparse() && f2.isSparse()) {
+            return mergeProduct(f1, f2, variables, threshold);
+        }
+        BayesianNetwork network = f1.getNetwork();
+        boolean firstWalked = f1.isSparse();
+        Factor walked = firstWalked ? f1 : f2;
+        Factor other = firstWalked ? f2 : f1;
+        double[] otherValues = other.getValues();
+        int[] outputStrides = stridesOf(network, variables);
+        //the strides of the other factor by the output variables , 0 for a variable it doesn't mention.
+        int[] otherStrides = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            int position = other.indexOfVariable(variables[i]);
+            if (position != -1) otherStrides[i] = other.getStride(position);
+        }
+        //the output positions of the walked variables , and the free positions (the ones the walked factor doesn't mention).
+        int[] walkedVariables = walked.getVariables();
+        int[] walkedPositions = new int[walkedVariables.length];
+        boolean[] mentioned = new boolean[variables.length];
+        for (int p = 0; p < walkedVariables.length; p++) {
+            walkedPositions[p] = Arrays.binarySearch(variables, walkedVariables[p]);
+            mentioned[walkedPositions[p]] = true;
+        }
+        int[] free = new int[variables.length - walkedVariables.length];
+        int freeSize = 1;
+        int position = 0;
+        for (int i = 0; i < variables.length; i++) {
+            if (mentioned[i]) continue;
+            free[position++] = i;
+            freeSize *= network.getCardinality(variables[i]);
+        }
+        int[] walkedIndexes = walked.getNonZeroIndexes();
+        double[] walkedValues = walked.getNonZeroValues();
+        int parts = parts(sizeOf(network, variables), threshold, walkedIndexes.length);
+        int cells = freeSize;
+        SparseBuilder output = collect(walkedIndexes.length, parts, (from, to, builder) -> {
+            int[] counter = new int[free.length];
+            for (int k = from; k < to; k++) {
+                int outputIndex = 0;
+                int otherIndex = 0;
+                for (int p = 0; p < walkedVariables.length; p++) {
+                    int digit = walkedIndexes[k] / walked.getStride(p) % walked.getCardinality(p);
+                    outputIndex += digit * outputStrides[walkedPositions[p]];
+                    otherIndex += digit * otherStrides[walkedPositions[p]];
+                }
+                Arrays.fill(counter, 0);
+                for (int e = 0; e < cells; e++) {
+                    double otherValue = otherValues[otherIndex];
+                    if (otherValue != 0) {
+                        //the same order of the operands as the dense product.
+                        double product = firstWalked ? walkedValues[k] * otherValue : otherValue * walkedValues[k];
+                        if (product != 0) builder.add(outputIndex, product);
+                    }
+                    for (int f = free.length - 1; f >= 0; f--) {
+                        int i = free[f];
+                        counter[f]++;
+                        outputIndex += outputStrides[i];
+                        otherIndex += otherStrides[i];
+                        if (counter[f] < network.getCardinality(variables[i])) break;
+                        counter[f] = 0;
+                        outputIndex -= outputStrides[i] * network.getCardinality(variables[i]);
+                        otherIndex -= otherStrides[i] * network.getCardinality(variables[i]);
+                    }
+                }
+            }
+        });
+        return output.build(network, variables, false);
+    }
+
+    //the merge join of two sparse factors , the entries of both are sorted by their outcomes of the shared variables (the key)
+    //and every pair of entries with the same key makes one output entry , so only the pairs that are not 0 on both sides are
+    //visited. the output index of a pair is the part of the first entry (all its variables) and the part of the second one
+    //(only the variables the first doesn't mention).
+    private static Factor mergeProduct(Factor f1, Factor f2, int[] variables, int threshold) {
+        BayesianNetwork network = f1.getNetwork();
+        int[] outputStrides = stridesOf(network, variables);
+        int[] shared = new int[Math.min(f1.getVariables().length, f2.getVariables().length)];
+        int count = 0;
+        for (int variable : f1.getVariables()) {
+            if (f2.mentions(variable)) shared[count++] = variable;
+        }
+        shared = Arrays.copyOf(shared, count);
+        KeyedEntries first = KeyedEntries.of(f1, variables, outputStrides, shared, true);
+        KeyedEntries second = KeyedEntries.of(f2, variables, outputStrides, shared, false);
+        int parts = parts(sizeOf(network, variables), threshold, first.keys.length);
+        SparseBuilder output = collect(first.keys.length, parts, (from, to, builder) -> {
+            //the first entry of the second factor whose key is not smaller than the key the part starts at.
+            int start = 0;
+            if (from < to) {
+                int low = 0;
+                int high = second.keys.length;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (second.keys[middle] < first.keys[from]) low = middle + 1;
+                    else high = middle;
+                }
+                start = low;
+            }
+            for (int a = from; a < to; a++) {
+                int key = first.keys[a];
+                while (start < second.keys.length && second.keys[start] < key) start++;
+                for (int b = start; b < second.keys.length && second.keys[b] == key; b++) {
+                    //the same order of the operands as the dense product.
+                    double product = first.values[a] * second.values[b];
+                    if (product != 0) builder.add(first.outputs[a] + second.outputs[b], product);
+                }
+            }
+        });
+        return output.build(network, variables, false);
+    }
+
+    //summing the variable at the position out of a sparse factor , the entries that fall on the same output entry are
+    //added by the order of their indexes , which is the order of the outcomes of the eliminated variable.
+    //an output that reaches the threshold is cut into parts of the entries , and the parts are joined in their order
+    //so the additions are in the same order as the sequential walk.
+    public static Factor sparseSumOut(Factor factor, int eliminatedPosition, int[] remainingVars, int threshold) {
+        BayesianNetwork network = factor.getNetwork();
+        int[] outputStrides = stridesOf(network, remainingVars);
+        int[] indexes = factor.getNonZeroIndexes();
+        double[] values = factor.getNonZeroValues();
+        int parts = parts(sizeOf(network, remainingVars), threshold, indexes.length);
+        SparseBuilder output = collect(indexes.length, parts, (from, to, builder) -> {
+            for (int k = from; k < to; k++) {
+                int outputIndex = 0;
+                int position = 0;
+                for (int p = 0; p < factor.getVariables().length; p++) {
+                    if (p == eliminatedPosition) continue;
+                    outputIndex += indexes[k] / factor.getStride(p) % factor.getCardinality(p) * outputStrides[position++];
+                }
+                builder.add(outputIndex, values[k]);
+            }
+        });
+        return output.build(network, remainingVars, true);
+    }
+
+    //restricting a sparse factor to the evidence outcomes , the entries that agree with the evidence keep their order.
+    public static Factor sparseRestrict(Factor factor, int[] evidence, int[] remainingVars) {
+        BayesianNetwork network = factor.getNetwork();
+        int[] outputStrides = stridesOf(network, remainingVars);
+        int[] variables = factor.getVariables();
+        int[] indexes = factor.getNonZeroIndexes();
+        double[] values = factor.getNonZeroValues();
+        SparseBuilder output = new SparseBuilder(indexes.length);
+        for (int k = 0; k < indexes.length; k++) {
+            int outputIndex = 0;
+            int position = 0;
+            boolean agrees = true;
+            for (int p = 0; p < variables.length && agrees; p++) {
+                int digit = indexes[k] / factor.getStride(p) % factor.getCardinality(p);
+                if (evidence[variables[p]] == -1) {
+                    outputIndex += digit * outputStrides[position++];
+                } else {
+                    agrees = digit == evidence[variables[p]];
+                }
+            }
+            if (agrees) output.add(outputIndex, values[k]);
+        }
+        return output.build(network, remainingVars, false);
+    }
+
+    //the entries that are not 0 of a source table walked over the cardinalities by the source strides (the walk of the gather
+    //of VE) , so a CPT or a restricted slice can be made sparse without its full table. returns how many there are and writes
+    //their ascending indexes and values when the arrays are given , a first pass without them counts so they fit exactly.
+    public static int gatherNonZeros(double[] source, int offset, int[] cardinalities, int[] sourceStrides, int[] indexes,
+                                     double[] values) {
+        int size = 1;
+        for (int cardinality : cardinalities) size *= cardinality;
+        int[] counter = new int[cardinalities.length];
+        int sourceIndex = offset;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (source[sourceIndex] != 0) {
+                if (indexes != null) {
+                    indexes[count] = i;
+                    values[count] = source[sourceIndex];
+                }
+                count++;
+            }
+            for (int k = cardinalities.length - 1; k >= 0; k--) {
+                counter[k]++;
+                sourceIndex += sourceStrides[k];
+                if (counter[k] < cardinalities[k]) break;
+                counter[k] = 0;
+                sourceIndex -= sourceStrides[k] * cardinalities[k];
+            }
+        }
+        return count;
+    }
+
+    //the number of parts a sparse kernel is cut into , more than one only when the output reaches the threshold (like run).
+    private static int parts(int outputSize, int threshold, int entries) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (threshold <= 0 || outputSize < threshold || parallelism < 2) {
+            return 1;
+        }
+        return Math.max(1, Math.min(entries, 4 * parallelism));
+    }
+
+    //a sparse kernel over a range of the entries it walks , writing to its own builder.
+    private interface PartKernel {
+        void apply(int from, int to, SparseBuilder builder);
+    }
+
+    //running the kernel over the entries [0 , count) cut into parts , every part fills its own builder (on the fork/join pool
+    //when there is more than one) and the builders are joined by the order of the parts.
+    private static SparseBuilder collect(int count, int parts, PartKernel kernel) {
+        SparseBuilder[] builders = new SparseBuilder[parts];
+        RangeKernel task = (from, to) -> {
+            for (int part = from; part < to; part++) {
+                int first = (int) ((long) count * part / parts);
+                int last = (int) ((long) count * (part + 1) / parts);
+                builders[part] = new SparseBuilder(last - first);
+                kernel.apply(first, last, builders[part]);
+            }
+        };
+        if (parts == 1) {
+            task.apply(0, 1);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(task, 0, parts, 1));
+        }
+        for (int part = 1; part < parts; part++) {
+            builders[0].addAll(builders[part]);
+        }
+        return builders[0];
+    }
+
+    //the number of entries of a table over the variables.
+    private static int sizeOf(BayesianNetwork network, int[] variables) {
+        int size = 1;
+        for (int variable : variables) size *= network.getCardinality(variable);
+        return size;
+    }
+
+    //the strides of a table over the sorted variables , the last one changes the fastest.
+    private static int[] stridesOf(BayesianNetwork network, int[] variables) {
+        int[] strides = new int[variables.length];
+        int stride = 1;
+        for (int i = variables.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= network.getCardinality(variables[i]);
+        }
+        return strides;
+    }
+
+    //collecting the entries of a sparse output in any order , they are sorted by their index when the factor is built.
+    private static final class SparseBuilder {
+        private int[] indexes;
+        private double[] values;
+        private int count = 0;
+        private boolean ascending = true;
+
+        private SparseBuilder(int capacity) {
+            this.indexes = new int[Math.max(capacity, 1)];
+            this.values = new double[indexes.length];
+        }
+
+        private void add(int index, double value) {
+            if (count == indexes.length) {
+                indexes = Arrays.copyOf(indexes, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            if (count > 0 && index <= indexes[count - 1]) ascending = false;
+            indexes[count] = index;
+            values[count++] = value;
+        }
+
+        //appending the entries of another builder after these ones.
+        private void addAll(SparseBuilder other) {
+            for (int k = 0; k < other.count; k++) {
+                add(other.indexes[k], other.values[k]);
+            }
+        }
+
+        //the sparse factor , with merge the entries of the same index are added by the order they came in ,
+        //otherwise every index comes once.
+        private Factor build(BayesianNetwork network, int[] variables, boolean merge) {
+            if (!ascending) {
+                //sorting by the index and then by the arrival , packed in one long so the primitive sort keeps it stable.
+                long[] keys = new long[count];
+                for (int k = 0; k < count; k++) keys[k] = (long) indexes[k] << 32 | k;
+                Arrays.sort(keys);
+                int[] sortedIndexes = new int[count];
+                double[] sortedValues = new double[count];
+                for (int k = 0; k < count; k++) {
+                    sortedIndexes[k] = (int) (keys[k] >>> 32);
+                    sortedValues[k] = values[(int) keys[k]];
+                }
+                indexes = sortedIndexes;
+                values = sortedValues;
+            }
+            int size = 0;
+            for (int k = 0; k < count; k++) {
+                if (merge && size > 0 && indexes[size - 1] == indexes[k]) {
+                    values[size - 1] += values[k];
+                } else {
+                    indexes[size] = indexes[k];
+                    values[size++] = values[k];
+                }
+            }
+            return Factor.sparse(network, variables, Arrays.copyOf(indexes, size), Arrays.copyOf(values, size));
+        }
+    }
+
+    //the entries of a sparse factor sorted by their key , the index of their outcomes of the shared variables (in a table over
+    //them). the sort is stable so the entries of a key keep their order. outputs are the parts of the output indexes the
+    //entries give , by all their variables or without the shared ones.
+    private static final class KeyedEntries {
+        private final int[] keys;
+        private final int[] outputs;
+        private final double[] values;
+
+        private KeyedEntries(int[] keys, int[] outputs, double[] values) {
+            this.keys = keys;
+            this.outputs = outputs;
+            this.values = values;
+        }
+
+        private static KeyedEntries of(Factor factor, int[] variables, int[] outputStrides, int[] shared, boolean withShared) {
+            int[] sharedStrides = stridesOf(factor.getNetwork(), shared);
+            int[] factorVariables = factor.getVariables();
+            //the stride of every variable of the factor in the key (0 when it isn't shared) and in the output part.
+            int[] keyStrides = new int[factorVariables.length];
+            int[] partStrides = new int[factorVariables.length];
+            for (int p = 0; p < factorVariables.length; p++) {
+                int sharedPosition = Arrays.binarySearch(shared, factorVariables[p]);
+                if (sharedPosition >= 0) keyStrides[p] = sharedStrides[sharedPosition];
+                if (sharedPosition < 0 || withShared) {
+                    partStrides[p] = outputStrides[Arrays.binarySearch(variables, factorVariables[p])];
+                }
+            }
+            int[] indexes = factor.getNonZeroIndexes();
+            double[] entryValues = factor.getNonZeroValues();
+            //sorting by the key and then by the position , packed in one long so the primitive sort keeps it stable.
+            long[] order = new long[indexes.length];
+            int[] parts = new int[indexes.length];
+            for (int k = 0; k < indexes.length; k++) {
+                int key = 0;
+                for (int p = 0; p < factorVariables.length; p++) {
+                    int digit = indexes[k] / factor.getStride(p) % factor.getCardinality(p);
+                    key += digit * keyStrides[p];
+                    parts[k] += digit * partStrides[p];
+                }
+                order[k] = (long) key << 32 | k;
+            }
+            Arrays.sort(order);
+            int[] keys = new int[indexes.length];
+            int[] outputs = new int[indexes.length];
+            double[] values = new double[indexes.length];
+            for (int k = 0; k < order.length; k++) {
+                int entry = (int) order[k];
+                keys[k] = (int) (order[k] >>> 32);
+                outputs[k] = parts[entry];
+                values[k] = entryValues[entry];
+            }
+            return new KeyedEntries(keys, outputs, values);
+        }
+    }
+
+    //halving the range until it is one chunk.
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RangeKernel kernel;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        private RangeTask(RangeKernel kernel, int from, int to, int chunk) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                kernel.apply(from, to);
+                return;
+            }
+            int middle = from + (to - from) / 2;
+            invokeAll(new RangeTask(kernel, from, middle, chunk), new RangeTask(kernel, middle, to, chunk));
+        }
+    }
+}
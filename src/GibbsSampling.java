@@ -0,0 +1,289 @@
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+//this class implements the Gibbs sampler , aka algorithm 6 , a Markov chain Monte Carlo answer that keeps working when the
+//evidence is unlikely (where most likelihood weighting samples get a tiny weight).
+//how it works:
+//the evidence variables are fixed and the other ancestors of the query and evidence variables start from a forward sample.
+//every sweep draws each of them again from its distribution given its Markov blanket , which is proportional to its own CPT
+//times the CPTs of its children. the first sweeps (burn-in) are dropped and then every thinning-th sweep is kept , the estimate
+//is the fraction of the kept sweeps that agree with the query.
+//several independent chains run on the fork/join workers , every chain has its own SplittableRandom split from the seed in chain
+//order and the chains are merged in chain order , so the estimate doesn't depend on the threads.
+//the convergence diagnostic is the Gelman-Rubin R-hat of the query indicator over the chains , close to 1 when they agree.
+//a chain that ends in a state of probability 0 never found a state the evidence allows and is left out , when every chain
+//is left out the evidence is impossible and the answer is NaN like the exact one.
+//like every Gibbs sampler it needs a chain that can reach every state the evidence allows , CPT entries of 0 can split the states
+//into regions a chain never leaves and then the estimate is biased (the exact algorithms or algorithm 5 should be used there).
+//the counts are the multiplications of the blanket CPT entries and the additions of their normalization and of the kept sweeps.
+public class GibbsSampling extends BayesianAlgorithm {
+    //the CPTs of the Markov blanket of every variable (its own CPT first and then the CPTs of its children) , per network.
+    private static final Map<BayesianNetwork, int[][]> BLANKETS = new WeakHashMap<>();
+
+    private final int samples;
+    private final int chains;
+    private final int burnIn;
+    private final int thinning;
+    private final long seed;
+    private final ForkJoinPool pool; // null to run the chains on the thread of the query
+    //the R-hat of the last query , -1 when nothing was sampled and NaN with a single chain.
+    private double rHat = -1;
+
+    //constructors
+    public GibbsSampling(int samples, int chains, int burnIn, int thinning, long seed) {
+        this(samples, chains, burnIn, thinning, seed, null);
+    }
+
+    public GibbsSampling(int samples, int chains, int burnIn, int thinning, long seed, ForkJoinPool pool) {
+        if (samples < 1 || chains < 1 || burnIn < 0 || thinning < 1) {
+            throw new IllegalArgumentException("Error: bad Gibbs settings , samples " + samples + " chains " + chains
+                    + " burn-in " + burnIn + " thinning " + thinning);
+        }
+        this.samples = samples;
+        this.chains = chains;
+        this.burnIn = burnIn;
+        this.thinning = thinning;
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    //returns the Markov blanket CPTs of the variables of the network , computing them on the first call.
+    private static int[][] blanketsOf(BayesianNetwork network) {
+        synchronized (BLANKETS) {
+            int[][] blankets = BLANKETS.get(network);
+            if (blankets == null) {
+                blankets = new int[network.size()][];
+                for (int variable = 0; variable < network.size(); variable++) {
+                    List<Integer> cpts = new ArrayList<>();
+                    if (network.getCPTFor(variable) != -1) cpts.add(network.getCPTFor(variable));
+                    for (int child : network.getChildren(variable)) {
+                        if (network.getCPTFor(child) != -1) cpts.add(network.getCPTFor(child));
+                    }
+                    blankets[variable] = new int[cpts.size()];
+                    for (int i = 0; i < cpts.size(); i++) blankets[variable][i] = cpts.get(i);
+                }
+                BLANKETS.put(network, blankets);
+            }
+            return blankets;
+        }
+    }
+
+    @Override
+    public void calculateProbability(Query query, BayesianNetwork network) {
+        additionCount = 0;
+        multiplicationCount = 0;
+        rHat = -1;
+        Double extracted = tryExtractProbability(query, network);
+        if (extracted != null) {
+            this.probability = extracted;
+            return;
+        }
+        int[] evidence = network.encode(query.getEvidence());
+        int[] queryAssignment = network.encode(query.getQuery());
+        int[] knownAssignment = evidence.clone();
+        network.encodeInto(query.getQuery(), knownAssignment);
+        //an evidence outcome the network doesn't know , no state of the chain is possible.
+        for (int outcome : evidence) {
+            if (outcome == -2) {
+                this.probability = Double.NaN;
+                return;
+            }
+        }
+        //only the ancestors of the query and evidence variables affect the answer , a child outside of them is not in the blanket.
+        boolean[] ancestors = getAncestors(network, knownAssignment);
+        List<Integer> sampled = new ArrayList<>();
+        for (int variable = 0; variable < network.size(); variable++) {
+            if (ancestors[variable]) sampled.add(variable);
+        }
+        sampled.sort(Comparator.comparingInt(network::getTopologicalRank));
+        int[] order = new int[sampled.size()];
+        for (int i = 0; i < order.length; i++) order[i] = sampled.get(i);
+        requireCPTs(network, order);
+        int[][] allBlankets = blanketsOf(network);
+        int[][] blankets = new int[network.size()][];
+        for (int variable : order) {
+            int[] cpts = allBlankets[variable];
+            int count = 0;
+            int[] relevant = new int[cpts.length];
+            for (int cpt : cpts) {
+                if (ancestors[network.getCPTVariable(cpt)]) relevant[count++] = cpt;
+            }
+            blankets[variable] = Arrays.copyOf(relevant, count);
+        }
+        //the chains and their random generators , split in chain order before any chain runs.
+        int keptPerChain = (samples + chains - 1) / chains;
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Callable<Chain>> tasks = new ArrayList<>();
+        for (int c = 0; c < chains; c++) {
+            SplittableRandom random = root.split();
+            tasks.add(() -> runChain(network, order, blankets, evidence, queryAssignment, keptPerChain, random));
+        }
+        List<Chain> results = new ArrayList<>();
+        if (pool == null) {
+            for (Callable<Chain> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } else {
+            try {
+                for (Future<Chain> future : pool.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Error: the sampling was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error: a Gibbs chain failed " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        long matches = 0;
+        List<Chain> possible = new ArrayList<>();
+        for (Chain chain : results) {
+            additionCount += chain.additions;
+            multiplicationCount += chain.multiplications;
+            if (chain.possible) {
+                matches += chain.matches;
+                possible.add(chain);
+            }
+        }
+        if (possible.isEmpty()) {
+            this.probability = Double.NaN;
+            return;
+        }
+        rHat = gelmanRubin(possible, keptPerChain);
+        this.probability = (double) matches / ((long) keptPerChain * possible.size());
+    }
+
+    //one chain , the forward sample , the burn-in and then the kept sweeps.
+    private Chain runChain(BayesianNetwork network, int[] order, int[][] blankets, int[] evidence, int[] queryAssignment,
+                           int kept, SplittableRandom random) {
+        Chain chain = new Chain();
+        int[] assignment = evidence.clone();
+        for (int variable : order) {
+            if (evidence[variable] == -1) {
+                assignment[variable] = forwardSample(network, variable, assignment, random);
+            }
+        }
+        int sweeps = burnIn + kept * thinning;
+        double[] weights = new double[maxCardinality(network, order)];
+        for (int sweep = 0; sweep < sweeps; sweep++) {
+            for (int variable : order) {
+                if (evidence[variable] != -1) continue;
+                assignment[variable] = blanketSample(network, variable, blankets[variable], assignment, weights, random, chain);
+            }
+            if (sweep >= burnIn && (sweep - burnIn) % thinning == thinning - 1) {
+                boolean matches = true;
+                for (int variable : order) {
+                    if (queryAssignment[variable] != -1 && queryAssignment[variable] != assignment[variable]) {
+                        matches = false;
+                        break;
+                    }
+                }
+                if (matches) {
+                    chain.matches++;
+                    chain.additions++;
+                }
+            }
+        }
+        double joint = 1.0;
+        for (int variable : order) {
+            joint *= network.getProbability(network.getCPTFor(variable), assignment);
+        }
+        chain.possible = joint > 0;
+        return chain;
+    }
+
+    //drawing the variable given its Markov blanket , every outcome is weighted by the product of the blanket CPTs.
+    //when every outcome has weight 0 (a state the evidence makes impossible) the variable keeps its outcome.
+    private static int blanketSample(BayesianNetwork network, int variable, int[] blanket, int[] assignment, double[] weights,
+                                     SplittableRandom random, Chain chain) {
+        int current = assignment[variable];
+        int cardinality = network.getCardinality(variable);
+        double total = 0;
+        for (int outcome = 0; outcome < cardinality; outcome++) {
+            assignment[variable] = outcome;
+            double weight = 1.0;
+            for (int cpt : blanket) {
+                weight *= network.getProbability(cpt, assignment);
+            }
+            chain.multiplications += Math.max(blanket.length - 1, 0);
+            weights[outcome] = weight;
+            total += weight;
+        }
+        chain.additions += cardinality - 1;
+        if (total == 0) {
+            return current;
+        }
+        double threshold = random.nextDouble() * total;
+        double cumulative = 0;
+        for (int outcome = 0; outcome < cardinality - 1; outcome++) {
+            cumulative += weights[outcome];
+            if (threshold < cumulative) return outcome;
+        }
+        return cardinality - 1;
+    }
+
+    //drawing the variable from its own CPT row , the parents are already assigned (the start of a chain).
+    private static int forwardSample(BayesianNetwork network, int variable, int[] assignment, SplittableRandom random) {
+        int cpt = network.getCPTFor(variable);
+        int cardinality = network.getCardinality(variable);
+        double threshold = random.nextDouble();
+        double cumulative = 0;
+        for (int outcome = 0; outcome < cardinality - 1; outcome++) {
+            assignment[variable] = outcome;
+            cumulative += network.getProbability(cpt, assignment);
+            if (threshold < cumulative) return outcome;
+        }
+        return cardinality - 1;
+    }
+
+    private static int maxCardinality(BayesianNetwork network, int[] variables) {
+        int max = 1;
+        for (int variable : variables) max = Math.max(max, network.getCardinality(variable));
+        return max;
+    }
+
+    //the potential scale reduction of the query indicator , sqrt of the pooled variance over the mean variance within the chains.
+    //chains that all kept the same value agree (1) , a single chain or a single kept sweep has no diagnostic (NaN).
+    private static double gelmanRubin(List<Chain> results, int kept) {
+        int m = results.size();
+        if (m < 2 || kept < 2) return Double.NaN;
+        double[] means = new double[m];
+        double grandMean = 0;
+        double within = 0;
+        for (int j = 0; j < m; j++) {
+            double mean = (double) results.get(j).matches / kept;
+            means[j] = mean;
+            grandMean += mean / m;
+            //the sample variance of a 0/1 indicator with the given mean.
+            within += mean * (1 - mean) * kept / (kept - 1) / m;
+        }
+        double between = 0;
+        for (double mean : means) {
+            between += (mean - grandMean) * (mean - grandMean) * kept / (m - 1);
+        }
+        if (within == 0) {
+            return between == 0 ? 1.0 : Double.POSITIVE_INFINITY;
+        }
+        double pooled = (kept - 1.0) / kept * within + between / kept;
+        return Math.sqrt(pooled / within);
+    }
+
+    public double getRHat() {
+        return rHat;
+    }
+
+    //the counts of one chain.
+    private static final class Chain {
+        private long matches = 0;
+        private boolean possible = false;
+        private int additions = 0;
+        private int multiplications = 0;
+    }
+}
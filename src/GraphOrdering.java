@@ -0,0 +1,47 @@
+import java.util.*;
+
+//the base of the orderings that look at the interaction graph of the current factors ,
+//two variables are neighbors when some factor contains both of them , so eliminating a variable joins it with all its neighbors.
+//the graph is built from the factors on every step (the factors change after every elimination) ,
+//the variable with the lowest cost is chosen and on a tie the lower id (the lexicographically smaller variable) wins.
+public abstract class GraphOrdering implements EliminationOrdering {
+
+    //the cost of eliminating the variable now , lower is better.
+    protected abstract long cost(int variable, Map<Integer, Set<Integer>> neighbors, BayesianNetwork network);
+
+    @Override
+    public int chooseNext(List<Integer> hiddenVariables, List<Factor> factors) {
+        Map<Integer, Set<Integer>> neighbors = new HashMap<>();
+        BayesianNetwork network = null;
+        for (Factor factor : factors) {
+            network = factor.getNetwork();
+            int[] variables = factor.getVariables();
+            for (int v : variables) {
+                Set<Integer> around = neighbors.computeIfAbsent(v, k -> new HashSet<>());
+                for (int u : variables) {
+                    if (u != v) around.add(u);
+                }
+            }
+        }
+        int res = -1;
+        long minCost = Long.MAX_VALUE;
+        for (int var : hiddenVariables) {
+            long cost = network == null ? 0 : cost(var, neighbors, network);
+            if (res == -1 || cost < minCost || (cost == minCost && var < res)) {
+                minCost = cost;
+                res = var;
+            }
+        }
+        return res;
+    }
+
+    //the neighbors of the variable , empty for a variable that no factor mentions.
+    protected static Set<Integer> neighborsOf(int variable, Map<Integer, Set<Integer>> neighbors) {
+        return neighbors.getOrDefault(variable, Collections.emptySet());
+    }
+
+    //the product that stops growing at Long.MAX_VALUE instead of overflowing.
+    protected static long multiply(long a, long b) {
+        return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+}
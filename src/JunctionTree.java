@@ -0,0 +1,284 @@
+import java.util.*;
+
+//the compiled clique tree (junction tree) of a network , it is built once per network and shared by all the queries.
+//how it is built:
+//1. moralizing - connecting every variable to its parents and the parents of every variable to each other.
+//2. triangulating - eliminating the variables greedily by the number of fill-in edges they add , every elimination gives a clique.
+//3. connecting the maximal cliques by a maximum spanning tree on the separator sizes , which keeps the running intersection property.
+//4. assigning every CPT to one clique that contains its variable and parents.
+//the structure is immutable , the potentials of a calibration live in the JunctionTreeInference object.
+public class JunctionTree {
+    //the compiled trees by network , the network is compared by identity.
+    private static final Map<BayesianNetwork, JunctionTree> COMPILED = new WeakHashMap<>();
+
+    private final BayesianNetwork network;
+    private final int[][] cliques; // the sorted variable ids of every clique
+    private final int[] parent; // the parent clique in the rooted tree , -1 for the root
+    private final int[][] separators; // the sorted variable ids shared with the parent clique
+    private final int[] order; // the cliques in pre-order , the root first and every clique before its children
+    private final int[][] assignedCPTs; // the CPTs multiplied into every clique
+    private final int[] homeClique; // for every variable the smallest clique that contains it
+
+    //returns the junction tree of the network , compiling it on the first call.
+    public static JunctionTree forNetwork(BayesianNetwork network) {
+        synchronized (COMPILED) {
+            JunctionTree tree = COMPILED.get(network);
+            if (tree == null) {
+                tree = new JunctionTree(network);
+                COMPILED.put(network, tree);
+            }
+            return tree;
+        }
+    }
+
+    private JunctionTree(BayesianNetwork network) {
+        this.network = network;
+        int n = network.size();
+        //1. the moral graph.
+        List<Set<Integer>> neighbors = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            neighbors.add(new HashSet<>());
+        }
+        for (int v = 0; v < n; v++) {
+            int[] parents = network.getParents(v);
+            for (int i = 0; i < parents.length; i++) {
+                connect(neighbors, v, parents[i]);
+                for (int j = i + 1; j < parents.length; j++) {
+                    connect(neighbors, parents[i], parents[j]);
+                }
+            }
+        }
+        //2. triangulation by min-fill , on a tie the smaller clique and then the smaller id.
+        List<int[]> eliminationCliques = new ArrayList<>();
+        boolean[] eliminated = new boolean[n];
+        for (int step = 0; step < n; step++) {
+            int best = -1;
+            int bestFill = Integer.MAX_VALUE;
+            long bestWeight = Long.MAX_VALUE;
+            for (int v = 0; v < n; v++) {
+                if (eliminated[v]) continue;
+                int fill = countFillIn(neighbors, v);
+                long weight = network.getCardinality(v);
+                for (int u : neighbors.get(v)) weight *= network.getCardinality(u);
+                if (fill < bestFill || (fill == bestFill && weight < bestWeight)) {
+                    best = v;
+                    bestFill = fill;
+                    bestWeight = weight;
+                }
+            }
+            int[] clique = new int[neighbors.get(best).size() + 1];
+            int k = 0;
+            clique[k++] = best;
+            for (int u : neighbors.get(best)) clique[k++] = u;
+            Arrays.sort(clique);
+            eliminationCliques.add(clique);
+            //connecting the neighbors to each other and removing the eliminated variable.
+            List<Integer> around = new ArrayList<>(neighbors.get(best));
+            for (int i = 0; i < around.size(); i++) {
+                for (int j = i + 1; j < around.size(); j++) {
+                    connect(neighbors, around.get(i), around.get(j));
+                }
+                neighbors.get(around.get(i)).remove(best);
+            }
+            neighbors.get(best).clear();
+            eliminated[best] = true;
+        }
+        //keeping only the maximal cliques.
+        List<int[]> maximal = new ArrayList<>();
+        for (int i = 0; i < eliminationCliques.size(); i++) {
+            boolean contained = false;
+            for (int j = 0; j < eliminationCliques.size() && !contained; j++) {
+                if (i == j) continue;
+                int[] other = eliminationCliques.get(j);
+                int[] clique = eliminationCliques.get(i);
+                //equal cliques keep only the first one.
+                contained = isSubset(clique, other) && (clique.length < other.length || j < i);
+            }
+            if (!contained) maximal.add(eliminationCliques.get(i));
+        }
+        this.cliques = maximal.toArray(new int[0][]);
+        //3. the maximum spanning tree (Kruskal) , empty separators connect the parts of a disconnected network.
+        int m = cliques.length;
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < m; i++) {
+            for (int j = i + 1; j < m; j++) {
+                edges.add(new int[]{intersection(cliques[i], cliques[j]).length, i, j});
+            }
+        }
+        edges.sort((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(a[2], b[2]));
+        int[] component = new int[m];
+        for (int i = 0; i < m; i++) component[i] = i;
+        List<List<Integer>> tree = new ArrayList<>();
+        for (int i = 0; i < m; i++) tree.add(new ArrayList<>());
+        for (int[] edge : edges) {
+            int a = find(component, edge[1]);
+            int b = find(component, edge[2]);
+            if (a == b) continue;
+            component[a] = b;
+            tree.get(edge[1]).add(edge[2]);
+            tree.get(edge[2]).add(edge[1]);
+        }
+        //rooting the tree at clique 0 and listing the cliques in pre-order.
+        this.parent = new int[m];
+        this.separators = new int[m][];
+        this.order = new int[m];
+        Arrays.fill(parent, -1);
+        boolean[] visited = new boolean[m];
+        Deque<Integer> stack = new ArrayDeque<>();
+        int position = 0;
+        if (m > 0) {
+            stack.push(0);
+            visited[0] = true;
+        }
+        while (!stack.isEmpty()) {
+            int c = stack.pop();
+            order[position++] = c;
+            for (int child : tree.get(c)) {
+                if (!visited[child]) {
+                    visited[child] = true;
+                    parent[child] = c;
+                    separators[child] = intersection(cliques[child], cliques[c]);
+                    stack.push(child);
+                }
+            }
+        }
+        if (m > 0) separators[0] = new int[0];
+        //4. every CPT goes to the smallest clique that contains its whole scope.
+        List<List<Integer>> assigned = new ArrayList<>();
+        for (int i = 0; i < m; i++) assigned.add(new ArrayList<>());
+        for (int cpt = 0; cpt < network.getCPTCount(); cpt++) {
+            int[] scope = network.getCPTScope(cpt).clone();
+            Arrays.sort(scope);
+            assigned.get(smallestContaining(scope)).add(cpt);
+        }
+        this.assignedCPTs = new int[m][];
+        for (int i = 0; i < m; i++) {
+            assignedCPTs[i] = new int[assigned.get(i).size()];
+            for (int j = 0; j < assignedCPTs[i].length; j++) assignedCPTs[i][j] = assigned.get(i).get(j);
+        }
+        this.homeClique = new int[n];
+        for (int v = 0; v < n; v++) {
+            homeClique[v] = smallestContaining(new int[]{v});
+        }
+    }
+
+    //getters , the arrays are shared and must not be modified.
+    public BayesianNetwork getNetwork() {
+        return network;
+    }
+
+    public int getCliqueCount() {
+        return cliques.length;
+    }
+
+    public int[] getClique(int clique) {
+        return cliques[clique];
+    }
+
+    public int getParent(int clique) {
+        return parent[clique];
+    }
+
+    public int[] getSeparator(int clique) {
+        return separators[clique];
+    }
+
+    public int[] getOrder() {
+        return order;
+    }
+
+    public int[] getAssignedCPTs(int clique) {
+        return assignedCPTs[clique];
+    }
+
+    public int getHomeClique(int variable) {
+        return homeClique[variable];
+    }
+
+    //the smallest clique (by table size) that contains all the given sorted variables , or -1.
+    public int smallestContaining(int[] variables) {
+        int best = -1;
+        long bestSize = Long.MAX_VALUE;
+        for (int c = 0; c < cliques.length; c++) {
+            if (!isSubset(variables, cliques[c])) continue;
+            long size = 1;
+            for (int v : cliques[c]) size *= network.getCardinality(v);
+            if (size < bestSize) {
+                best = c;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    //----- helpers -----
+
+    private static void connect(List<Set<Integer>> neighbors, int a, int b) {
+        if (a != b) {
+            neighbors.get(a).add(b);
+            neighbors.get(b).add(a);
+        }
+    }
+
+    //the number of edges that are missing between the neighbors of the variable.
+    private static int countFillIn(List<Set<Integer>> neighbors, int v) {
+        List<Integer> around = new ArrayList<>(neighbors.get(v));
+        int fill = 0;
+        for (int i = 0; i < around.size(); i++) {
+            for (int j = i + 1; j < around.size(); j++) {
+                if (!neighbors.get(around.get(i)).contains(around.get(j))) fill++;
+            }
+        }
+        return fill;
+    }
+
+    private static int find(int[] component, int i) {
+        while (component[i] != i) {
+            component[i] = component[component[i]];
+            i = component[i];
+        }
+        return i;
+    }
+
+    //both arrays are sorted.
+    static boolean isSubset(int[] small, int[] big) {
+        int j = 0;
+        for (int v : small) {
+            while (j < big.length && big[j] < v) j++;
+            if (j == big.length || big[j] != v) return false;
+        }
+        return true;
+    }
+
+    //both arrays are sorted , so is the result.
+    static int[] intersection(int[] a, int[] b) {
+        int[] res = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                res[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(res, count);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("JunctionTree{");
+        for (int c = 0; c < cliques.length; c++) {
+            sb.append("\n  clique ").append(c).append(" {");
+            for (int i = 0; i < cliques[c].length; i++) {
+                if (i > 0) sb.append(",");
+                sb.append(network.getName(cliques[c][i]));
+            }
+            sb.append("} parent=").append(parent[c]);
+        }
+        return sb.append("\n}").toString();
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+import java.util.List;
+
+//this class implements inference on the junction tree of the network , aka algorithm 4.
+//the clique tree is compiled once per network , then for a given evidence the tree is calibrated by two sweeps of messages
+//(collect from the leaves to the root and distribute back , the Hugin way) and every clique holds P(clique variables , evidence).
+//the object keeps its last calibration , so the next queries with the same evidence only read a marginal from a clique.
+//the operation counts of every query are the ones of its calibration and its marginal , also when the calibration is reused ,
+//so the counts only depend on the query and not on the queries this object answered before (or on the threads).
+//divisions (by the old separator in the distribute sweep) are counted as multiplications.
+//a query whose variables share no clique is answered by VE (algorithm 2) with the settings of the run.
+public class JunctionTreeInference extends BayesianAlgorithm {
+    private final RunOptions options;
+    private BayesianAlgorithm fallback; // created on the first query that needs it
+    private JunctionTree tree;
+    private int[] calibratedEvidence;
+    private Factor[] potentials;
+    //the work of the kept calibration , it is reported again by every query that reuses it.
+    private int calibrationAdditions;
+    private int calibrationMultiplications;
+    private int calibrationFactors;
+    private long calibrationCells;
+
+    //constructors
+    public JunctionTreeInference() {
+        this(new RunOptions());
+    }
+
+    public JunctionTreeInference(RunOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    public void calculateProbability(Query query, BayesianNetwork network) {
+        additionCount = 0;
+        multiplicationCount = 0;
+        inducedWidth = 0;
+        largestFactorSize = 0;
+        factorsCreated = 0;
+        cellsAllocated = 0;
+        eliminationOrder = null;
+        Double extracted = tryExtractProbability(query, network);
+        if (extracted != null) {
+            this.probability = extracted;
+            return;
+        }
+        int[] evidence = network.encode(query.getEvidence());
+        int[] queryAssignment = network.encode(query.getQuery());
+        //the query variables must share a clique , otherwise (only possible with a few query variables) we fall back to VE.
+        int[] queryVariables = new int[query.getQuery().size()];
+        int k = 0;
+        for (int variable = 0; variable < network.size(); variable++) {
+            if (queryAssignment[variable] != -1) queryVariables[k++] = variable;
+        }
+        JunctionTree compiled = JunctionTree.forNetwork(network);
+        int clique = compiled.smallestContaining(queryVariables);
+        if (clique == -1) {
+            if (fallback == null) {
+                fallback = AlgorithmFactory.createAlgorithm(2, options);
+            }
+            fallback.calculateProbability(query, network);
+            this.probability = fallback.getProbability();
+            this.additionCount = fallback.getAdditionCount();
+            this.multiplicationCount = fallback.getMultiplicationCount();
+            this.inducedWidth = fallback.getInducedWidth();
+            this.largestFactorSize = fallback.getLargestFactorSize();
+            this.factorsCreated = fallback.getFactorsCreated();
+            this.cellsAllocated = fallback.getCellsAllocated();
+            this.eliminationOrder = fallback.getEliminationOrder();
+            return;
+        }
+        for (int variable : queryVariables) {
+            if (queryAssignment[variable] < 0) {
+                System.out.println("Invalid outcome for variable: " + network.getName(variable));
+                this.probability = 0;
+                return;
+            }
+        }
+        //calibrating only when the network or the evidence changed since the last query.
+        if (tree != compiled || !Arrays.equals(evidence, calibratedEvidence)) {
+            tree = compiled;
+            calibrate(evidence);
+            calibratedEvidence = evidence;
+            calibrationAdditions = additionCount;
+            calibrationMultiplications = multiplicationCount;
+            calibrationFactors = factorsCreated;
+            calibrationCells = cellsAllocated;
+        } else {
+            additionCount = calibrationAdditions;
+            multiplicationCount = calibrationMultiplications;
+            factorsCreated = calibrationFactors;
+            cellsAllocated = calibrationCells;
+        }
+        //the width of the tree is the one of its largest clique , and the clique tables are the largest factors.
+        for (int c = 0; c < tree.getCliqueCount(); c++) {
+            inducedWidth = Math.max(inducedWidth, tree.getClique(c).length - 1);
+            largestFactorSize = Math.max(largestFactorSize, potentials[c].getSize());
+        }
+        //reading the marginal of the query variables and normalizing it (the clique holds the joint with the evidence).
+        Factor marginal = marginalize(potentials[clique], queryVariables);
+        double total = 0;
+        double[] values = marginal.getValues();
+        for (int i = 0; i < values.length; i++) {
+            total += values[i];
+        }
+        additionCount += values.length - 1;
+        this.probability = marginal.getValue(marginal.getIndex(queryAssignment)) / total;
+    }
+
+    //building the clique potentials from the CPTs , entering the evidence and passing the messages.
+    private void calibrate(int[] evidence) {
+        BayesianNetwork network = tree.getNetwork();
+        int m = tree.getCliqueCount();
+        potentials = new Factor[m];
+        for (int c = 0; c < m; c++) {
+            int[] clique = tree.getClique(c);
+            int size = 1;
+            for (int v : clique) size *= network.getCardinality(v);
+            double[] ones = new double[size];
+            Arrays.fill(ones, 1.0);
+            potentials[c] = new Factor(network, clique, ones);
+            factorsCreated++;
+            cellsAllocated += size;
+            for (int cpt : tree.getAssignedCPTs(c)) {
+                multiplyInto(potentials[c], network.getCPTScope(cpt), network.getCPTStrides(cpt), network.getCPTTable(cpt));
+            }
+        }
+        //the evidence zeroes the entries of its home clique that disagree with it.
+        for (int variable = 0; variable < evidence.length; variable++) {
+            if (evidence[variable] == -1) continue;
+            Factor home = potentials[tree.getHomeClique(variable)];
+            int position = home.indexOfVariable(variable);
+            int stride = home.getStride(position);
+            int cardinality = home.getCardinality(position);
+            double[] values = home.getValues();
+            for (int i = 0; i < values.length; i++) {
+                if ((i / stride) % cardinality != evidence[variable]) values[i] = 0;
+            }
+        }
+        int[] order = tree.getOrder();
+        Factor[] separators = new Factor[m];
+        //collect: from the last clique of the pre-order back to the root , every clique sends its marginal to its parent.
+        for (int k = m - 1; k >= 1; k--) {
+            int c = order[k];
+            Factor message = marginalize(potentials[c], tree.getSeparator(c));
+            multiplyInto(potentials[tree.getParent(c)], message.getVariables(), strides(message), message.getValues());
+            separators[c] = message;
+        }
+        //distribute: from the root forward , every clique gets the new separator divided by the one it sent.
+        for (int k = 1; k < m; k++) {
+            int c = order[k];
+            Factor message = marginalize(potentials[tree.getParent(c)], tree.getSeparator(c));
+            double[] ratio = message.getValues().clone();
+            double[] old = separators[c].getValues();
+            for (int i = 0; i < ratio.length; i++) {
+                ratio[i] = old[i] == 0 ? 0 : ratio[i] / old[i];
+            }
+            multiplicationCount += ratio.length;
+            multiplyInto(potentials[c], message.getVariables(), strides(message), ratio);
+            separators[c] = message;
+        }
+    }
+
+    //multiplies a table into the target factor , the table variables are a subset of the target variables.
+    //the target is walked by an odometer and the table index moves by the table strides (0 for a variable it doesn't have).
+    private void multiplyInto(Factor target, int[] sourceVariables, int[] sourceStrides, double[] source) {
+        int[] variables = target.getVariables();
+        int[] strides = new int[variables.length];
+        int[] cardinalities = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            cardinalities[i] = target.getCardinality(i);
+            for (int j = 0; j < sourceVariables.length; j++) {
+                if (sourceVariables[j] == variables[i]) strides[i] = sourceStrides[j];
+            }
+        }
+        double[] values = target.getValues();
+        int[] counter = new int[variables.length];
+        int sourceIndex = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= source[sourceIndex];
+            for (int k = variables.length - 1; k >= 0; k--) {
+                counter[k]++;
+                sourceIndex += strides[k];
+                if (counter[k] < cardinalities[k]) break;
+                counter[k] = 0;
+                sourceIndex -= strides[k] * cardinalities[k];
+            }
+        }
+        multiplicationCount += values.length;
+    }
+
+    //sums the factor down to the given sorted subset of its variables.
+    private Factor marginalize(Factor source, int[] keep) {
+        int[] variables = source.getVariables();
+        BayesianNetwork network = source.getNetwork();
+        int[] targetStrides = new int[variables.length];
+        int size = 1;
+        for (int j = keep.length - 1; j >= 0; j--) {
+            targetStrides[source.indexOfVariable(keep[j])] = size;
+            size *= network.getCardinality(keep[j]);
+        }
+        double[] result = new double[size];
+        double[] values = source.getValues();
+        int[] counter = new int[variables.length];
+        int targetIndex = 0;
+        for (int i = 0; i < values.length; i++) {
+            result[targetIndex] += values[i];
+            for (int k = variables.length - 1; k >= 0; k--) {
+                counter[k]++;
+                targetIndex += targetStrides[k];
+                if (counter[k] < source.getCardinality(k)) break;
+                counter[k] = 0;
+                targetIndex -= targetStrides[k] * source.getCardinality(k);
+            }
+        }
+        additionCount += values.length - size;
+        factorsCreated++;
+        cellsAllocated += size;
+        return new Factor(network, keep, result);
+    }
+
+    private static int[] strides(Factor factor) {
+        int[] strides = new int[factor.getVariables().length];
+        for (int i = 0; i < strides.length; i++) {
+            strides[i] = factor.getStride(i);
+        }
+        return strides;
+    }
+
+    //the compiled tree this object was calibrated on , for debugging.
+    public JunctionTree getTree() {
+        return tree;
+    }
+
+    //the calibrated clique potentials , for debugging.
+    public List<Factor> getPotentials() {
+        return potentials == null ? null : Arrays.asList(potentials);
+    }
+}
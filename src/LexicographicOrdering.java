@@ -0,0 +1,15 @@
+import java.util.Collections;
+import java.util.List;
+
+//the ordering of the classic VE , the hidden variable with the lowest ascii value (lexicographically) which is the lowest id.
+public class LexicographicOrdering implements EliminationOrdering {
+    @Override
+    public String getName() {
+        return "lexicographic";
+    }
+
+    @Override
+    public int chooseNext(List<Integer> hiddenVariables, List<Factor> factors) {
+        return Collections.min(hiddenVariables);
+    }
+}
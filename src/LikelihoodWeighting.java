@@ -0,0 +1,190 @@
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+//this class implements the likelihood weighting sampler , aka algorithm 5 , an approximate answer for networks where the exact
+//algorithms blow up.
+//how it works:
+//every sample assigns the ancestors of the query and evidence variables in topological order , a hidden variable is drawn from
+//its CPT row given the parents that were already drawn and an evidence variable keeps its outcome and multiplies the weight
+//of the sample by its CPT entry. the estimate is the weight of the samples that agree with the query over the total weight.
+//the samples are cut into fixed chunks , every chunk has its own SplittableRandom split from the seed in chunk order and
+//the chunk sums are added in chunk order , so the estimate depends on the seed and the number of samples but not on the threads.
+//the counts are the multiplications of the evidence entries into the weights and the additions of the weights into the two sums.
+public class LikelihoodWeighting extends BayesianAlgorithm {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final int samples;
+    private final long seed;
+    private final ForkJoinPool pool; // null to sample on the thread of the query
+    //the effective sample size of the last query , (sum of weights)^2 / sum of squared weights , -1 when nothing was sampled.
+    private double effectiveSampleSize = -1;
+
+    //constructors
+    public LikelihoodWeighting(int samples, long seed) {
+        this(samples, seed, null);
+    }
+
+    public LikelihoodWeighting(int samples, long seed, ForkJoinPool pool) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("Error: the number of samples should be at least 1 but got " + samples);
+        }
+        this.samples = samples;
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    @Override
+    public void calculateProbability(Query query, BayesianNetwork network) {
+        additionCount = 0;
+        multiplicationCount = 0;
+        effectiveSampleSize = -1;
+        Double extracted = tryExtractProbability(query, network);
+        if (extracted != null) {
+            this.probability = extracted;
+            return;
+        }
+        int[] evidence = network.encode(query.getEvidence());
+        int[] queryAssignment = network.encode(query.getQuery());
+        int[] knownAssignment = evidence.clone();
+        network.encodeInto(query.getQuery(), knownAssignment);
+        //an evidence outcome the network doesn't know gives every sample the weight 0.
+        for (int outcome : evidence) {
+            if (outcome == -2) {
+                effectiveSampleSize = 0;
+                this.probability = Double.NaN;
+                return;
+            }
+        }
+        //only the ancestors of the query and evidence variables affect the answer , the rest of the network is never sampled.
+        boolean[] ancestors = getAncestors(network, knownAssignment);
+        List<Integer> sampled = new ArrayList<>();
+        for (int variable = 0; variable < network.size(); variable++) {
+            if (ancestors[variable]) sampled.add(variable);
+        }
+        sampled.sort(Comparator.comparingInt(network::getTopologicalRank));
+        int[] order = new int[sampled.size()];
+        for (int i = 0; i < order.length; i++) order[i] = sampled.get(i);
+        requireCPTs(network, order);
+        //the random generators of the chunks , split in chunk order before any chunk runs.
+        int chunkCount = (samples + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Callable<Chunk>> chunks = new ArrayList<>();
+        for (int c = 0; c < chunkCount; c++) {
+            int size = Math.min(CHUNK_SIZE, samples - c * CHUNK_SIZE);
+            SplittableRandom random = root.split();
+            chunks.add(() -> sampleChunk(network, order, evidence, queryAssignment, size, random));
+        }
+        List<Chunk> results = new ArrayList<>();
+        if (pool == null) {
+            for (Callable<Chunk> chunk : chunks) {
+                try {
+                    results.add(chunk.call());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } else {
+            try {
+                for (Future<Chunk> future : pool.invokeAll(chunks)) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Error: the sampling was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error: a sampling chunk failed " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        double totalWeight = 0;
+        double matchingWeight = 0;
+        double squaredWeights = 0;
+        for (Chunk chunk : results) {
+            totalWeight += chunk.totalWeight;
+            matchingWeight += chunk.matchingWeight;
+            squaredWeights += chunk.squaredWeights;
+            additionCount += chunk.additions;
+            multiplicationCount += chunk.multiplications;
+        }
+        //all the samples have weight 0 when the evidence is impossible , the estimate is then NaN like the exact answer.
+        effectiveSampleSize = squaredWeights == 0 ? 0 : totalWeight * totalWeight / squaredWeights;
+        this.probability = matchingWeight / totalWeight;
+    }
+
+    //drawing the samples of one chunk with its own random generator.
+    private Chunk sampleChunk(BayesianNetwork network, int[] order, int[] evidence, int[] queryAssignment, int size,
+                              SplittableRandom random) {
+        Chunk chunk = new Chunk();
+        int[] assignment = evidence.clone();
+        for (int s = 0; s < size; s++) {
+            double weight = 1.0;
+            boolean weighted = false;
+            for (int variable : order) {
+                int cpt = network.getCPTFor(variable);
+                if (evidence[variable] != -1) {
+                    double probability = network.getProbability(cpt, assignment);
+                    if (weighted) chunk.multiplications++;
+                    weight *= probability;
+                    weighted = true;
+                } else {
+                    assignment[variable] = drawOutcome(network, cpt, variable, assignment, random);
+                }
+            }
+            boolean matches = true;
+            for (int variable : order) {
+                if (queryAssignment[variable] != -1 && queryAssignment[variable] != assignment[variable]) {
+                    matches = false;
+                    break;
+                }
+            }
+            chunk.totalWeight += weight;
+            chunk.squaredWeights += weight * weight;
+            chunk.additions++;
+            if (matches) {
+                chunk.matchingWeight += weight;
+                chunk.additions++;
+            }
+        }
+        return chunk;
+    }
+
+    //drawing an outcome of the variable from the row of its CPT , the parents are already assigned.
+    //the variable changes the fastest in the table , so the row is contiguous by the stride of the variable.
+    private static int drawOutcome(BayesianNetwork network, int cpt, int variable, int[] assignment, SplittableRandom random) {
+        int[] scope = network.getCPTScope(cpt);
+        int[] strides = network.getCPTStrides(cpt);
+        double[] table = network.getCPTTable(cpt);
+        int offset = 0;
+        int variableStride = 1;
+        for (int i = 0; i < scope.length; i++) {
+            if (scope[i] == variable) {
+                variableStride = strides[i];
+            } else {
+                offset += assignment[scope[i]] * strides[i];
+            }
+        }
+        int cardinality = network.getCardinality(variable);
+        double threshold = random.nextDouble();
+        double cumulative = 0;
+        for (int outcome = 0; outcome < cardinality - 1; outcome++) {
+            cumulative += table[offset + outcome * variableStride];
+            if (threshold < cumulative) return outcome;
+        }
+        return cardinality - 1;
+    }
+
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    //the sums of one chunk.
+    private static final class Chunk {
+        private double totalWeight = 0;
+        private double matchingWeight = 0;
+        private double squaredWeights = 0;
+        private int additions = 0;
+        private int multiplications = 0;
+    }
+}
@@ -1,34 +1,16 @@
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 //the lookup algorithm is a simple algorithm that calculates the probability of a query given the CPTs
 //it extracts the relevant assignments for each CPT and multiplies the probabilities.
 public class Lookup extends BayesianAlgorithm {
     @Override
-    public void calculateProbability(Query query , List<CPT> CPTS) {
+    public void calculateProbability(Query query , BayesianNetwork network) {
         //since this is a joint probability all the variables are as query.
-        Map<String,String> allAssignments = new HashMap<>(query.getQuery());
-        //allAssignments.putAll(query.getEvidence());
-        double probability = 1.0;
-        //for each CPT we need to extract the relevant assignments and multiply the probabilities with the getProbability method of the CPT class.
-        boolean isFirst = true;
-        for(CPT CPT : CPTS) {
-            Map<String,String> relevantAssignments = new HashMap<>();
-            relevantAssignments.put(CPT.getVariable().getName() , allAssignments.get(CPT.getVariable().getName()));
-            for(Variable parent : CPT.getParents()) {
-                relevantAssignments.put(parent.getName() , allAssignments.get(parent.getName()));
-            }
-            if(!isFirst) {
-                this.multiplicationCount++;
-            }
-            else {
-                isFirst = false;
-            }
-            probability *= CPT.getProbability(relevantAssignments);
-        }
+        int[] allAssignments = network.encode(query.getQuery());
+        //for each CPT we take the entry of the assignment and multiply the probabilities , the network does it over the assignment array.
+        double probability = network.jointProbability(allAssignments);
         //we haven't made any additions.
         this.additionCount = 0;
         //we have made n multiplications where n is the number of CPTs - 1.
+        this.multiplicationCount = Math.max(network.getCPTCount() - 1, 0);
         this.probability = probability;
     }
-}
\ No newline at end of file
+}
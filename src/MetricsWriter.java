@@ -0,0 +1,116 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+
+//this class writes the per query metrics to a side file , one record per query by the input order.
+//the extension of the file chooses the format , ".csv" is a table with a header line and ".jsonl" (or ".json") is one json
+//object per line. the columns are the same in both formats:
+//index , query , algorithm , source , wall_time_ms , probability , additions , multiplications , factors_created ,
+//largest_factor , cells_allocated , hidden_eliminated , elimination_order , reroute , estimated_largest_factor ,
+//estimated_operations (the last three are empty without a cost planner).
+public class MetricsWriter implements Closeable {
+    private static final String[] COLUMNS = {"index", "query", "algorithm", "source", "wall_time_ms", "probability", "additions",
+            "multiplications", "factors_created", "largest_factor", "cells_allocated", "hidden_eliminated", "elimination_order",
+            "reroute", "estimated_largest_factor", "estimated_operations"};
+
+    private final BufferedWriter writer;
+    private final boolean csv;
+
+    //constructor , creating the file (an existing one is replaced) and writing the header of a csv file.
+    public MetricsWriter(String fileName) throws IOException {
+        checkFileName(fileName);
+        this.csv = fileName.endsWith(".csv");
+        this.writer = new BufferedWriter(new FileWriter(fileName));
+        if (csv) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\n");
+        }
+    }
+
+    //checking the extension of the file , so a bad name stops the run before any query.
+    public static void checkFileName(String fileName) {
+        if (!fileName.endsWith(".csv") && !fileName.endsWith(".jsonl") && !fileName.endsWith(".json")) {
+            throw new IllegalArgumentException("Error: the metrics file should end with .csv , .jsonl or .json but got " + fileName);
+        }
+    }
+
+    //writing the record of the query at the index , a result without metrics is written with its counts only.
+    public void write(long index, Query query, QueryResult result) throws IOException {
+        QueryMetrics metrics = result.getMetrics();
+        QueryPlan plan = metrics == null ? null : metrics.getPlan();
+        double probability = result.getProbability();
+        Object[] values = {
+                index,
+                query.toString().trim(),
+                query.getAlgorithmType(),
+                metrics == null ? null : metrics.getSource(),
+                metrics == null ? null : String.format("%.3f", metrics.getWallTimeNanos() / 1e6),
+                Double.isNaN(probability) || Double.isInfinite(probability) ? null : String.format("%.5f", probability),
+                result.getAdditionCount(),
+                result.getMultiplicationCount(),
+                metrics == null ? null : metrics.getFactorsCreated(),
+                metrics == null ? null : metrics.getLargestFactorSize(),
+                metrics == null ? null : metrics.getCellsAllocated(),
+                metrics == null ? null : metrics.getHiddenVariablesEliminated(),
+                metrics == null ? null : metrics.orderString(),
+                plan == null ? null : plan.getReroute(),
+                plan == null || plan.getEstimatedLargestFactor() == -1 ? null : plan.getEstimatedLargestFactor(),
+                plan == null || plan.getEstimatedOperations() == -1 ? null : plan.getEstimatedOperations()
+        };
+        StringBuilder sb = new StringBuilder();
+        if (!csv) sb.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            if (csv) {
+                appendCsv(sb, values[i]);
+            } else {
+                sb.append('"').append(COLUMNS[i]).append("\":");
+                appendJson(sb, values[i], COLUMNS[i]);
+            }
+        }
+        if (!csv) sb.append('}');
+        writer.write(sb.append('\n').toString());
+    }
+
+    //a csv cell , the text is quoted when it has a comma or a quote and an unknown value is an empty cell.
+    private static void appendCsv(StringBuilder sb, Object value) {
+        if (value == null) return;
+        String text = value.toString();
+        if (text.indexOf(',') == -1 && text.indexOf('"') == -1 && text.indexOf('\n') == -1) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    //a json value , the numbers as they are , the texts as strings and an unknown value as null.
+    private static void appendJson(StringBuilder sb, Object value, String column) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        boolean text = column.equals("query") || column.equals("source") || column.equals("elimination_order")
+                || column.equals("reroute");
+        if (!text) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (char c : value.toString().toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,15 @@
+import java.util.Map;
+import java.util.Set;
+
+//eliminating the variable with the fewest neighbors , the joined factor has the fewest variables.
+public class MinDegreeOrdering extends GraphOrdering {
+    @Override
+    public String getName() {
+        return "min-degree";
+    }
+
+    @Override
+    protected long cost(int variable, Map<Integer, Set<Integer>> neighbors, BayesianNetwork network) {
+        return neighborsOf(variable, neighbors).size();
+    }
+}
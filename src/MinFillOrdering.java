@@ -0,0 +1,29 @@
+import java.util.*;
+
+//eliminating the variable that adds the fewest new edges (fill-in) between its neighbors ,
+//every missing edge is a pair of variables that will share a factor only because of this elimination.
+public class MinFillOrdering extends GraphOrdering {
+    @Override
+    public String getName() {
+        return "min-fill";
+    }
+
+    @Override
+    protected long cost(int variable, Map<Integer, Set<Integer>> neighbors, BayesianNetwork network) {
+        long fill = 0;
+        List<Integer> around = new ArrayList<>(neighborsOf(variable, neighbors));
+        for (int i = 0; i < around.size(); i++) {
+            for (int j = i + 1; j < around.size(); j++) {
+                if (!neighborsOf(around.get(i), neighbors).contains(around.get(j))) {
+                    fill += edgeWeight(around.get(i), around.get(j), network);
+                }
+            }
+        }
+        return fill;
+    }
+
+    //every fill-in edge counts as one , the weighted version overrides it.
+    protected long edgeWeight(int a, int b, BayesianNetwork network) {
+        return 1;
+    }
+}
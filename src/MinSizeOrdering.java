@@ -0,0 +1,20 @@
+import java.util.Map;
+import java.util.Set;
+
+//eliminating the variable whose joined factor (the variable and all its neighbors) has the fewest entries.
+//unlike the product rule every variable is counted once , so it is the real size of the factor that will be created.
+public class MinSizeOrdering extends GraphOrdering {
+    @Override
+    public String getName() {
+        return "min-size";
+    }
+
+    @Override
+    protected long cost(int variable, Map<Integer, Set<Integer>> neighbors, BayesianNetwork network) {
+        long size = network.getCardinality(variable);
+        for (int neighbor : neighborsOf(variable, neighbors)) {
+            size = multiply(size, network.getCardinality(neighbor));
+        }
+        return size;
+    }
+}
@@ -0,0 +1,305 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+//a tool that generates random networks in the XMLBIF format that the Extractor reads , and a matching input file of queries.
+//it is used to test and benchmark the algorithms on networks that are much bigger than alarm_net.xml.
+//the same options and seed always give the same files.
+//example:
+//java NetworkGenerator --topology=dag --nodes=500 --fan-in=3 --cardinality=2-3 --seed=7 --network=big_net.xml --input=big_input.txt --queries=100
+public class NetworkGenerator {
+    //the shapes of the DAG:
+    //dag - every variable takes up to fan-in random parents from the variables before it.
+    //polytree - a random tree with random edge directions , so there is at most one path between every two variables.
+    //grid - the variables are on a grid and every variable takes the one above it and the one to its left.
+    //layered - the variables are in layers and every variable takes up to fan-in parents from the layer above.
+    private String topology = "dag";
+    private int nodes = 100;
+    private int fanIn = 2;
+    private int minCardinality = 2;
+    private int maxCardinality = 2;
+    private int layers = 0;
+    private long seed = 1;
+    private String networkPath = "generated_net.xml";
+    private String inputPath = null;
+    private int queries = 20;
+    private int evidence = 2;
+    private int[] algorithms = {1, 2, 3};
+
+    public static void main(String[] args) {
+        NetworkGenerator generator = parse(args);
+        List<CPT> CPTs = generator.generate();
+        try {
+            generator.writeNetwork(CPTs);
+            if (generator.inputPath != null) {
+                generator.writeQueries(CPTs);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error: couldn't write the generated files " + e.getMessage());
+        }
+    }
+
+    //parsing the options , in the same --name=value form as the options of Ex1.
+    public static NetworkGenerator parse(String[] args) {
+        NetworkGenerator generator = new NetworkGenerator();
+        for (String arg : args) {
+            int equalsIndex = arg.indexOf('=');
+            if (!arg.startsWith("--") || equalsIndex == -1) {
+                throw new IllegalArgumentException("Error: options should look like --name=value but got " + arg);
+            }
+            String name = arg.substring(2, equalsIndex);
+            String value = arg.substring(equalsIndex + 1);
+            switch (name) {
+                case "topology":
+                    if (!Arrays.asList("dag", "polytree", "grid", "layered").contains(value)) {
+                        throw new IllegalArgumentException("Error: unknown topology " + value);
+                    }
+                    generator.topology = value;
+                    break;
+                case "nodes":
+                    generator.nodes = parseInt(name, value, 1);
+                    break;
+                case "fan-in":
+                    generator.fanIn = parseInt(name, value, 0);
+                    break;
+                case "cardinality":
+                    //a single number or a range like 2-4.
+                    int dashIndex = value.indexOf('-');
+                    generator.minCardinality = parseInt(name, dashIndex == -1 ? value : value.substring(0, dashIndex), 1);
+                    generator.maxCardinality = dashIndex == -1 ? generator.minCardinality : parseInt(name, value.substring(dashIndex + 1), generator.minCardinality);
+                    break;
+                case "layers":
+                    generator.layers = parseInt(name, value, 1);
+                    break;
+                case "seed":
+                    try {
+                        generator.seed = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Error: the value of --seed is not a number: " + value);
+                    }
+                    break;
+                case "network":
+                    generator.networkPath = value;
+                    break;
+                case "input":
+                    generator.inputPath = value;
+                    break;
+                case "queries":
+                    generator.queries = parseInt(name, value, 0);
+                    break;
+                case "evidence":
+                    generator.evidence = parseInt(name, value, 0);
+                    break;
+                case "algorithms":
+                    String[] types = value.split(",");
+                    generator.algorithms = new int[types.length];
+                    for (int i = 0; i < types.length; i++) {
+                        generator.algorithms[i] = parseInt(name, types[i].trim(), 0);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Error: unknown option --" + name);
+            }
+        }
+        return generator;
+    }
+
+    private static int parseInt(String name, String value, int min) {
+        int res;
+        try {
+            res = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error: the value of --" + name + " is not a number: " + value);
+        }
+        if (res < min) {
+            throw new IllegalArgumentException("Error: the value of --" + name + " should be at least " + min);
+        }
+        return res;
+    }
+
+    //----- the network -----
+
+    //generating the variables and their CPTs , the variables are named by their index so the names keep the generation order.
+    public List<CPT> generate() {
+        Random random = new Random(seed);
+        List<Variable> variables = new ArrayList<>();
+        int digits = String.valueOf(nodes - 1).length();
+        for (int i = 0; i < nodes; i++) {
+            int cardinality = minCardinality + random.nextInt(maxCardinality - minCardinality + 1);
+            List<String> outcomes = new ArrayList<>();
+            for (int outcome = 0; outcome < cardinality; outcome++) {
+                outcomes.add(cardinality == 2 ? (outcome == 0 ? "T" : "F") : "v" + outcome);
+            }
+            variables.add(new Variable(String.format("N%0" + digits + "d", i), outcomes));
+        }
+        List<List<Integer>> parents = generateParents(random);
+        List<CPT> CPTs = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            List<Variable> cptParents = new ArrayList<>();
+            int rows = 1;
+            for (int parent : parents.get(i)) {
+                cptParents.add(variables.get(parent));
+                rows *= variables.get(parent).getOutcomesCount();
+            }
+            CPTs.add(new CPT(variables.get(i), cptParents, randomTable(random, rows, variables.get(i).getOutcomesCount())));
+        }
+        return CPTs;
+    }
+
+    //the parents of every variable by index , a parent always has a smaller index except in the polytree.
+    private List<List<Integer>> generateParents(Random random) {
+        List<List<Integer>> parents = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            parents.add(new ArrayList<>());
+        }
+        switch (topology) {
+            case "dag":
+                for (int i = 1; i < nodes; i++) {
+                    int count = random.nextInt(Math.min(fanIn, i) + 1);
+                    while (parents.get(i).size() < count) {
+                        int parent = random.nextInt(i);
+                        if (!parents.get(i).contains(parent)) {
+                            parents.get(i).add(parent);
+                        }
+                    }
+                }
+                break;
+            case "polytree":
+                //connecting every variable to a random earlier one , the direction is random unless it breaks the fan-in.
+                for (int i = 1; i < nodes; i++) {
+                    int other = random.nextInt(i);
+                    boolean intoOther = random.nextBoolean() && parents.get(other).size() < fanIn;
+                    if (intoOther) {
+                        parents.get(other).add(i);
+                    } else if (fanIn > 0) {
+                        parents.get(i).add(other);
+                    }
+                }
+                break;
+            case "grid":
+                int columns = (int) Math.ceil(Math.sqrt(nodes));
+                for (int i = 0; i < nodes; i++) {
+                    if (i >= columns && parents.get(i).size() < fanIn) {
+                        parents.get(i).add(i - columns);
+                    }
+                    if (i % columns != 0 && parents.get(i).size() < fanIn) {
+                        parents.get(i).add(i - 1);
+                    }
+                }
+                break;
+            case "layered":
+                int layerCount = layers > 0 ? Math.min(layers, nodes) : (int) Math.ceil(Math.sqrt(nodes));
+                int width = (nodes + layerCount - 1) / layerCount;
+                for (int i = width; i < nodes; i++) {
+                    int layerStart = (i / width - 1) * width;
+                    int count = Math.min(fanIn, width);
+                    while (parents.get(i).size() < count) {
+                        int parent = layerStart + random.nextInt(width);
+                        if (!parents.get(i).contains(parent)) {
+                            parents.get(i).add(parent);
+                        }
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Error: unknown topology " + topology);
+        }
+        return parents;
+    }
+
+    //a random distribution for every row of the CPT , the last entry completes the row to 1.
+    private double[] randomTable(Random random, int rows, int cardinality) {
+        double[] table = new double[rows * cardinality];
+        int k = 0;
+        for (int row = 0; row < rows; row++) {
+            double[] weights = new double[cardinality];
+            double total = 0;
+            for (int i = 0; i < cardinality; i++) {
+                weights[i] = 0.05 + random.nextDouble();
+                total += weights[i];
+            }
+            double rest = 1.0;
+            for (int i = 0; i < cardinality - 1; i++) {
+                double p = Math.round(weights[i] / total * 1e6) / 1e6;
+                table[k++] = p;
+                rest -= p;
+            }
+            table[k++] = Math.round(rest * 1e6) / 1e6;
+        }
+        return table;
+    }
+
+    //writing the network in the XMLBIF format , first all the variables and then all the definitions.
+    public void writeNetwork(List<CPT> CPTs) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(networkPath))) {
+            writer.write("<NETWORK>\n");
+            for (CPT cpt : CPTs) {
+                writer.write("<VARIABLE>\n\t<NAME>" + cpt.getVariable().getName() + "</NAME>\n");
+                for (String outcome : cpt.getVariable().getOutcomes()) {
+                    writer.write("\t<OUTCOME>" + outcome + "</OUTCOME>\n");
+                }
+                writer.write("</VARIABLE>\n\n");
+            }
+            for (CPT cpt : CPTs) {
+                writer.write("<DEFINITION>\n\t<FOR>" + cpt.getVariable().getName() + "</FOR>\n");
+                for (Variable parent : cpt.getParents()) {
+                    writer.write("\t<GIVEN>" + parent.getName() + "</GIVEN>\n");
+                }
+                StringBuilder table = new StringBuilder();
+                for (double p : cpt.getTable()) {
+                    if (table.length() > 0) {
+                        table.append(' ');
+                    }
+                    table.append(p);
+                }
+                writer.write("\t<TABLE>" + table + "</TABLE>\n</DEFINITION>\n\n");
+            }
+            writer.write("</NETWORK>\n");
+        }
+    }
+
+    //----- the queries -----
+
+    //writing an input file for the network , the first line is the network file and then one query per line.
+    //algorithm 0 gets a joint query over all the variables and the others get a random variable given random evidence.
+    public void writeQueries(List<CPT> CPTs) throws IOException {
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        List<Variable> variables = new ArrayList<>();
+        for (CPT cpt : CPTs) {
+            variables.add(cpt.getVariable());
+        }
+        try (Writer writer = new BufferedWriter(new FileWriter(inputPath))) {
+            writer.write(new java.io.File(networkPath).getName());
+            for (int q = 0; q < queries; q++) {
+                int algorithm = algorithms[random.nextInt(algorithms.length)];
+                writer.write("\n");
+                if (algorithm == 0) {
+                    List<String> assignments = new ArrayList<>();
+                    for (Variable variable : variables) {
+                        assignments.add(randomAssignment(random, variable));
+                    }
+                    writer.write("P(" + String.join(",", assignments) + ")");
+                    continue;
+                }
+                List<Variable> shuffled = new ArrayList<>(variables);
+                Collections.shuffle(shuffled, random);
+                int evidenceCount = Math.min(evidence, shuffled.size() - 1);
+                List<String> evidenceAssignments = new ArrayList<>();
+                for (int i = 1; i <= evidenceCount; i++) {
+                    evidenceAssignments.add(randomAssignment(random, shuffled.get(i)));
+                }
+                String queryPart = randomAssignment(random, shuffled.get(0));
+                if (!evidenceAssignments.isEmpty()) {
+                    queryPart += "|" + String.join(",", evidenceAssignments);
+                }
+                writer.write("P(" + queryPart + ")," + algorithm);
+            }
+        }
+    }
+
+    private String randomAssignment(Random random, Variable variable) {
+        return variable.getName() + "=" + variable.getOutcomes().get(random.nextInt(variable.getOutcomesCount()));
+    }
+}
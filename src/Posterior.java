@@ -0,0 +1,108 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//the full posterior distribution over the query variables of a query , given its evidence.
+//an entry is one assignment of the query variables , the first variable of the query changes the slowest.
+//every entry keeps the probability and the operation counts that a single query asking for it would have reported ,
+//so the queries of a group can be answered from one posterior with the same output as one by one.
+public class Posterior {
+    private final BayesianNetwork network;
+    private final int[] variables; // the ids of the query variables , by the order of the query
+    private final int[] cardinalities;
+    private final double[] probabilities;
+    private final int[] additionCounts;
+    private final int[] multiplicationCounts;
+
+    //constructor , an empty posterior over the query variables of the query.
+    public Posterior(Query query, BayesianNetwork network) {
+        this.network = network;
+        this.variables = new int[query.getQuery().size()];
+        this.cardinalities = new int[variables.length];
+        int size = 1;
+        int i = 0;
+        for (String name : query.getQuery().keySet()) {
+            variables[i] = network.getId(name);
+            if (variables[i] == -1) {
+                throw new IllegalArgumentException("Unknown variable: " + name);
+            }
+            cardinalities[i] = network.getCardinality(variables[i]);
+            size *= cardinalities[i];
+            i++;
+        }
+        this.probabilities = new double[size];
+        this.additionCounts = new int[size];
+        this.multiplicationCounts = new int[size];
+    }
+
+    public int size() {
+        return probabilities.length;
+    }
+
+    //writing the outcomes of the entry into an assignment array indexed by id.
+    public void assign(int entry, int[] assignment) {
+        for (int i = variables.length - 1; i >= 0; i--) {
+            assignment[variables[i]] = entry % cardinalities[i];
+            entry /= cardinalities[i];
+        }
+    }
+
+    //the entry of an assignment of the query variables by name , -1 when an outcome is unknown.
+    public int indexOf(Map<String, String> queryAssignment) {
+        int entry = 0;
+        for (int i = 0; i < variables.length; i++) {
+            int outcome = network.getOutcomeIndex(variables[i], queryAssignment.get(network.getName(variables[i])));
+            if (outcome == -1) {
+                return -1;
+            }
+            entry = entry * cardinalities[i] + outcome;
+        }
+        return entry;
+    }
+
+    //the single query that asks for the entry , with the evidence and the algorithm of the given query.
+    public Query queryOf(int entry, Query query) {
+        int[] outcomes = new int[network.size()];
+        assign(entry, outcomes);
+        Map<String, String> queryAssignment = new LinkedHashMap<>();
+        for (int variable : variables) {
+            queryAssignment.put(network.getName(variable), network.getOutcome(variable, outcomes[variable]));
+        }
+        return new Query(queryAssignment, query.getEvidence(), query.getAlgorithmType(), query.isJointQuery());
+    }
+
+    public void set(int entry, double probability, int additionCount, int multiplicationCount) {
+        probabilities[entry] = probability;
+        additionCounts[entry] = additionCount;
+        multiplicationCounts[entry] = multiplicationCount;
+    }
+
+    //getters
+    public double getProbability(int entry) {
+        return probabilities[entry];
+    }
+
+    public int getAdditionCount(int entry) {
+        return additionCounts[entry];
+    }
+
+    public int getMultiplicationCount(int entry) {
+        return multiplicationCounts[entry];
+    }
+
+    //the distribution as text , for example "B=T: 0.28417 , B=F: 0.71583".
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int[] outcomes = new int[network.size()];
+        for (int entry = 0; entry < size(); entry++) {
+            assign(entry, outcomes);
+            if (entry > 0) sb.append(" , ");
+            for (int i = 0; i < variables.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(network.getName(variables[i])).append('=').append(network.getOutcome(variables[i], outcomes[variables[i]]));
+            }
+            sb.append(String.format(": %.5f", probabilities[entry]));
+        }
+        return sb.toString();
+    }
+}
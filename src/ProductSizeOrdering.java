@@ -0,0 +1,38 @@
+import java.util.List;
+
+//the ordering of VEHeuristic , the hidden variable with the smallest estimated size of the factors that contain it.
+//the estimate is the product of the sizes of those factors , a variable shared by two factors is counted by each of them.
+public class ProductSizeOrdering implements EliminationOrdering {
+    @Override
+    public String getName() {
+        return "product";
+    }
+
+    @Override
+    public int chooseNext(List<Integer> hiddenVariables, List<Factor> factors) {
+        int res = -1;
+        // initialize the minimum estimated size to a large value.
+        int minEstimatedSize = Integer.MAX_VALUE;
+        //for each hidden variable we're getting the factors that mention it and calculating the estimated size of the last factor.
+        for (int var : hiddenVariables) {
+            // calculate the estimated size of the factor that would be created by eliminating this variable.
+            //for example if we have 3 variables A,B,C and the outcomes of each one are {True, False} then the estimated size is 2*2*2 = 8.
+            //every factor contributes its own variables , so a variable shared by two factors is counted by each of them.
+            int estimatedSize = 1;
+            for (Factor factor : factors) {
+                if (!factor.mentions(var)) continue;
+                for (int i = 0; i < factor.getVariables().length; i++) {
+                    estimatedSize *= factor.getCardinality(i);
+                }
+            }
+            //if the current estimated size is less than the minimum estimated size this is the variable to eliminate for now.
+            //so we're lowering the minimum estimated size to the current one and assigning the variable to the result.
+            //on a tie the first variable in the order of VE wins , the order of the string version (see VariableElimination.hiddenVariables).
+            if (res == -1 || estimatedSize < minEstimatedSize) {
+                minEstimatedSize = estimatedSize;
+                res = var;
+            }
+        }
+        return res;
+    }
+}
@@ -38,6 +38,9 @@ public class Query {
                 algorithmTypeMap.put(1, "Simple inference");
                 algorithmTypeMap.put(2, "Variable elimination");
                 algorithmTypeMap.put(3, "VE Heuristic");
+                algorithmTypeMap.put(4, "Junction tree");
+                algorithmTypeMap.put(5, "Likelihood weighting");
+                algorithmTypeMap.put(6, "Gibbs sampling");
         if(isJointQuery){
             return "P(" + assaignmentToString(query) + ") , " + algorithmTypeMap.get(algorithmType) + "\n";
         }
@@ -0,0 +1,110 @@
+import java.util.*;
+
+//a bounded cache of query results that sits in front of the AlgorithmFactory (the batch executor asks it before creating an algorithm).
+//input files tend to repeat the same query many times , so a repeated query returns the stored probability and
+//operation counts instead of running the algorithm again.
+//the least recently used entry is evicted when the cache is full , and the hits , misses and evictions are counted.
+//the cache belongs to one compiled network , the network is not part of the key.
+public class QueryCache {
+    private final int capacity;
+    private final LinkedHashMap<String, QueryResult> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    //constructor , a capacity of 0 turns the cache off (every lookup is a miss).
+    public QueryCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        //access order makes the iteration order the LRU order , the eldest entry is the least recently used.
+        this.entries = new LinkedHashMap<String, QueryResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryResult> eldest) {
+                if (size() > QueryCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //returns the stored result or null , counting the hit or the miss.
+    public synchronized QueryResult get(Query query) {
+        QueryResult result = entries.get(canonicalKey(query));
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    public synchronized void put(Query query, QueryResult result) {
+        if (capacity > 0) {
+            entries.put(canonicalKey(query), result);
+        }
+    }
+
+    //the canonical form of a query , for example "P(B=T|J=T,M=T),2".
+    //the evidence is sorted by name since its order doesn't change the answer.
+    //the order of the query variables of a conditional query is kept , the algorithms read them by order (the first one
+    //decides if the answer is in a CPT) , while a joint query is answered by the lookup algorithm that doesn't care about it.
+    static String canonicalKey(Query query) {
+        StringBuilder sb = new StringBuilder("P(");
+        Map<String, String> queryVariables = query.isJointQuery() ? new TreeMap<>(query.getQuery()) : query.getQuery();
+        appendAssignment(sb, queryVariables);
+        if (!query.getEvidence().isEmpty()) {
+            sb.append('|');
+            appendAssignment(sb, new TreeMap<>(query.getEvidence()));
+        }
+        sb.append("),").append(query.getAlgorithmType());
+        return sb.toString();
+    }
+
+    private static void appendAssignment(StringBuilder sb, Map<String, String> assignment) {
+        boolean isFirst = true;
+        for (Map.Entry<String, String> entry : assignment.entrySet()) {
+            if (!isFirst) {
+                sb.append(',');
+            }
+            isFirst = false;
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+    }
+
+    //getters for the statistics.
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //the part of the lookups that were answered from the cache.
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryCache{size=%d/%d, hits=%d, misses=%d, evictions=%d, hitRate=%.2f}",
+                entries.size(), capacity, hits, misses, evictions, getHitRate());
+    }
+}
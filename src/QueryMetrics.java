@@ -0,0 +1,88 @@
+//the performance metrics of one query , what the run cost and where the cost went.
+//it is immutable , the result in the cache keeps the metrics of the run that calculated it.
+//the factor counts are -1 for the algorithms that don't build factors , and the hidden variables are -1 for the ones that
+//don't eliminate (the samplers). with a cost planner it also has the estimate of the query and the engine it was rerouted to.
+public class QueryMetrics {
+    //how the query was answered.
+    public static final String COMPUTED = "computed"; // the algorithm ran for the query
+    public static final String GROUP = "group"; // read from the posterior another query of its group calculated
+    public static final String CACHE = "cache"; // a hit in the cache , the counts are of the run that calculated it
+
+    private final String source;
+    private final long wallTimeNanos;
+    private final int factorsCreated;
+    private final int largestFactorSize;
+    private final long cellsAllocated;
+    private final int hiddenVariablesEliminated;
+    private final String[] eliminationOrder; // the names of the eliminated variables , empty when none
+    private final QueryPlan plan; // the plan of the cost planner , null without one
+
+    //constructor
+    public QueryMetrics(String source, long wallTimeNanos, int factorsCreated, int largestFactorSize, long cellsAllocated,
+                        int hiddenVariablesEliminated, String[] eliminationOrder, QueryPlan plan) {
+        this.source = source;
+        this.wallTimeNanos = wallTimeNanos;
+        this.factorsCreated = factorsCreated;
+        this.largestFactorSize = largestFactorSize;
+        this.cellsAllocated = cellsAllocated;
+        this.hiddenVariablesEliminated = hiddenVariablesEliminated;
+        this.eliminationOrder = eliminationOrder;
+        this.plan = plan;
+    }
+
+    //taking the metrics of an algorithm after it answered a query , the ids of the order become names of the network.
+    public static QueryMetrics of(BayesianAlgorithm algorithm, BayesianNetwork network, String source, long wallTimeNanos,
+                                  QueryPlan plan) {
+        int[] order = algorithm.getEliminationOrder();
+        String[] names = new String[order == null ? 0 : order.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = network.getName(order[i]);
+        }
+        return new QueryMetrics(source, wallTimeNanos, algorithm.getFactorsCreated(), algorithm.getLargestFactorSize(),
+                algorithm.getCellsAllocated(), order == null ? -1 : order.length, names, plan);
+    }
+
+    //the same metrics with another source and wall time , for a query that didn't run the algorithm itself.
+    public QueryMetrics reused(String source, long wallTimeNanos) {
+        return new QueryMetrics(source, wallTimeNanos, factorsCreated, largestFactorSize, cellsAllocated,
+                hiddenVariablesEliminated, eliminationOrder, plan);
+    }
+
+    //getters
+    public String getSource() {
+        return source;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    public int getFactorsCreated() {
+        return factorsCreated;
+    }
+
+    public int getLargestFactorSize() {
+        return largestFactorSize;
+    }
+
+    public long getCellsAllocated() {
+        return cellsAllocated;
+    }
+
+    public int getHiddenVariablesEliminated() {
+        return hiddenVariablesEliminated;
+    }
+
+    public String[] getEliminationOrder() {
+        return eliminationOrder.clone();
+    }
+
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    //the elimination order as text , the names separated by spaces.
+    public String orderString() {
+        return String.join(" ", eliminationOrder);
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.*;
+
+//the streaming mode of Ex1 , the queries are never held in a list.
+//it runs three stages at the same time:
+//1. a reader thread parses the input file line by line and hands every query to the workers.
+//2. the workers (the batch executor on a pool of threads) answer the queries , with the cache and their own algorithm objects.
+//3. the calling thread writes the results by the input order through a buffered writer.
+//the stages are connected by a bounded queue , when the writer falls behind the reader waits ,
+//so the memory does not grow with the size of the input file and the first result is written as soon as it is ready.
+public class QueryPipeline {
+    //the end of the input , it is put in the queue after the last query.
+    private static final Pending END = new Pending(null, null);
+
+    private final Extractor extractor;
+    private final BatchExecutor executor;
+    private final int threads;
+    private final int capacity;
+    private final boolean printOrderStats;
+
+    //constructor , the capacity is the number of queries that can be in flight between the reader and the writer.
+    public QueryPipeline(Extractor extractor, BatchExecutor executor, RunOptions options) {
+        this.extractor = extractor;
+        this.executor = executor;
+        this.threads = options.getThreads();
+        this.capacity = options.getStreamCapacity();
+        this.printOrderStats = options.isPrintOrderStats();
+    }
+
+    //running all the queries of the input file and writing their results , returns the number of queries.
+    public long run(Writer output) throws IOException {
+        return run(output, null);
+    }
+
+    //the same , and writing the metrics of every query with its result when the metrics writer is not null.
+    public long run(Writer output, MetricsWriter metrics) throws IOException {
+        BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(capacity);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Thread reader = new Thread(() -> readQueries(queue, workers), "query-reader");
+        reader.setDaemon(true);
+        reader.start();
+        long count = 0;
+        try {
+            while (true) {
+                Pending pending = queue.take();
+                if (pending == END) break;
+                QueryResult result;
+                try {
+                    result = pending.result.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Error: a query failed " + e.getCause().getMessage(), e.getCause());
+                }
+                //for the last query we don't need to add a new line , so the new line goes before every query but the first.
+                if (count > 0) {
+                    output.write("\n");
+                }
+                output.write(result.toOutputLine());
+                if (metrics != null) {
+                    metrics.write(count, pending.query, result);
+                }
+                if (printOrderStats && result.toStatsLine() != null) {
+                    System.out.println(pending.query.toString().trim() + " " + result.toStatsLine());
+                }
+                count++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error: the pipeline was interrupted", e);
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+        return count;
+    }
+
+    //the first stage , a line that can't be read or parsed becomes a failed result so the writer stops at its position.
+    private void readQueries(BlockingQueue<Pending> queue, ExecutorService workers) {
+        try (BufferedReader reader = extractor.openQueries()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                Query query;
+                try {
+                    query = extractor.parseQuery(line);
+                } catch (RuntimeException e) {
+                    queue.put(new Pending(null, failed(e)));
+                    return;
+                }
+                queue.put(new Pending(query, CompletableFuture.supplyAsync(() -> executor.runQuery(query), workers)));
+            }
+            queue.put(END);
+        } catch (IOException e) {
+            try {
+                queue.put(new Pending(null, failed(new RuntimeException("Error: couldn't read the queries from the input file " + e.getMessage()))));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (InterruptedException e) {
+            //the writer stopped , nothing is waiting for the rest of the queries.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CompletableFuture<QueryResult> failed(RuntimeException e) {
+        CompletableFuture<QueryResult> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    //a query on its way from the reader to the writer.
+    private static final class Pending {
+        private final Query query;
+        private final CompletableFuture<QueryResult> result;
+
+        private Pending(Query query, CompletableFuture<QueryResult> result) {
+            this.query = query;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+//the engine the cost planner chose for one query , with the estimate of its cost.
+//it is immutable , a plan that keeps the algorithm of the query has no reroute.
+public class QueryPlan {
+    private final int algorithmType; // the algorithm that runs the query
+    private final String ordering; // the elimination ordering of a rerouted VE , null for the algorithm as the run creates it
+    private final String reroute; // for example "1->3:min-fill" , null when the query runs on its own algorithm
+    private final long estimatedLargestFactor; // -1 when the query was not estimated
+    private final long estimatedOperations; // -1 when the query was not estimated
+
+    //constructor
+    public QueryPlan(int algorithmType, String ordering, String reroute, long estimatedLargestFactor, long estimatedOperations) {
+        this.algorithmType = algorithmType;
+        this.ordering = ordering;
+        this.reroute = reroute;
+        this.estimatedLargestFactor = estimatedLargestFactor;
+        this.estimatedOperations = estimatedOperations;
+    }
+
+    //the plan of a query the planner doesn't estimate , it runs on its own algorithm.
+    public static QueryPlan unplanned(int algorithmType) {
+        return new QueryPlan(algorithmType, null, null, -1, -1);
+    }
+
+    //the key of the algorithm object of the plan , plans with the same key can share it.
+    public String algorithmKey() {
+        return ordering == null ? String.valueOf(algorithmType) : algorithmType + ":" + ordering;
+    }
+
+    //getters
+    public int getAlgorithmType() {
+        return algorithmType;
+    }
+
+    public String getOrdering() {
+        return ordering;
+    }
+
+    public String getReroute() {
+        return reroute;
+    }
+
+    public long getEstimatedLargestFactor() {
+        return estimatedLargestFactor;
+    }
+
+    public long getEstimatedOperations() {
+        return estimatedOperations;
+    }
+}
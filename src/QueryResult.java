@@ -0,0 +1,138 @@
+//this class holds the answer of one query , the probability and the operations that were needed to get it.
+//it is immutable so it can be shared by the cache and written to the output many times.
+public class QueryResult {
+    private final double probability;
+    private final int additionCount;
+    private final int multiplicationCount;
+    private final int inducedWidth; // -1 when the algorithm doesn't build factors
+    private final int largestFactorSize; // -1 when the algorithm doesn't build factors
+    private final int prunedFactors; // -1 when the relevance pruning is off
+    private final int prunedHiddenVariables; // -1 when the relevance pruning is off
+    private final double effectiveSampleSize; // -1 when the algorithm doesn't weight samples
+    private final double rHat; // -1 when the algorithm doesn't run chains
+    private final QueryMetrics metrics; // null when the metrics are not collected
+
+    //constructors
+    public QueryResult(double probability, int additionCount, int multiplicationCount) {
+        this(probability, additionCount, multiplicationCount, -1, -1, -1, -1, -1, -1);
+    }
+
+    public QueryResult(double probability, int additionCount, int multiplicationCount, int inducedWidth, int largestFactorSize,
+                       int prunedFactors, int prunedHiddenVariables, double effectiveSampleSize, double rHat) {
+        this(probability, additionCount, multiplicationCount, inducedWidth, largestFactorSize, prunedFactors,
+                prunedHiddenVariables, effectiveSampleSize, rHat, null);
+    }
+
+    private QueryResult(double probability, int additionCount, int multiplicationCount, int inducedWidth, int largestFactorSize,
+                        int prunedFactors, int prunedHiddenVariables, double effectiveSampleSize, double rHat, QueryMetrics metrics) {
+        this.probability = probability;
+        this.additionCount = additionCount;
+        this.multiplicationCount = multiplicationCount;
+        this.inducedWidth = inducedWidth;
+        this.largestFactorSize = largestFactorSize;
+        this.prunedFactors = prunedFactors;
+        this.prunedHiddenVariables = prunedHiddenVariables;
+        this.effectiveSampleSize = effectiveSampleSize;
+        this.rHat = rHat;
+        this.metrics = metrics;
+    }
+
+    //taking the results of an algorithm after it calculated the probability.
+    public static QueryResult of(BayesianAlgorithm algorithm) {
+        return of(algorithm, algorithm.getProbability(), algorithm.getAdditionCount(), algorithm.getMultiplicationCount());
+    }
+
+    //the same with the probability and the counts of one entry of a posterior the algorithm calculated.
+    public static QueryResult of(BayesianAlgorithm algorithm, double probability, int additionCount, int multiplicationCount) {
+        int prunedFactors = -1;
+        int prunedHiddenVariables = -1;
+        if (algorithm instanceof VariableElimination) {
+            prunedFactors = ((VariableElimination) algorithm).getPrunedFactors();
+            prunedHiddenVariables = ((VariableElimination) algorithm).getPrunedHiddenVariables();
+        }
+        double effectiveSampleSize = -1;
+        if (algorithm instanceof LikelihoodWeighting) {
+            effectiveSampleSize = ((LikelihoodWeighting) algorithm).getEffectiveSampleSize();
+        }
+        double rHat = -1;
+        if (algorithm instanceof GibbsSampling) {
+            rHat = ((GibbsSampling) algorithm).getRHat();
+        }
+        return new QueryResult(probability, additionCount, multiplicationCount, algorithm.getInducedWidth(), algorithm.getLargestFactorSize(), prunedFactors, prunedHiddenVariables, effectiveSampleSize, rHat);
+    }
+
+    //the same result with the metrics of the query that got it.
+    public QueryResult withMetrics(QueryMetrics metrics) {
+        return new QueryResult(probability, additionCount, multiplicationCount, inducedWidth, largestFactorSize, prunedFactors,
+                prunedHiddenVariables, effectiveSampleSize, rHat, metrics);
+    }
+
+    //getters
+    public double getProbability() {
+        return probability;
+    }
+
+    public int getAdditionCount() {
+        return additionCount;
+    }
+
+    public int getMultiplicationCount() {
+        return multiplicationCount;
+    }
+
+    public int getInducedWidth() {
+        return inducedWidth;
+    }
+
+    public int getLargestFactorSize() {
+        return largestFactorSize;
+    }
+
+    public int getPrunedFactors() {
+        return prunedFactors;
+    }
+
+    public int getPrunedHiddenVariables() {
+        return prunedHiddenVariables;
+    }
+
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    public double getRHat() {
+        return rHat;
+    }
+
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    //the statistics of the work , for the queries that built factors or sampled (null for the others).
+    public String toStatsLine() {
+        if (rHat != -1) {
+            return String.format("r-hat: %.4f", rHat);
+        }
+        if (effectiveSampleSize != -1) {
+            return String.format("effective sample size: %.1f", effectiveSampleSize);
+        }
+        if (inducedWidth == -1) {
+            return null;
+        }
+        String line = "induced width: " + inducedWidth + " , largest factor: " + largestFactorSize;
+        if (prunedFactors != -1) {
+            line += " , pruned factors: " + prunedFactors + " , pruned hidden variables: " + prunedHiddenVariables;
+        }
+        return line;
+    }
+
+    //the line format of the output file.
+    public String toOutputLine() {
+        return String.format("%.5f,%d,%d", probability, additionCount, multiplicationCount);
+    }
+
+    @Override
+    public String toString() {
+        return toOutputLine();
+    }
+}
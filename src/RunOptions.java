@@ -0,0 +1,270 @@
+//the options of one run of Ex1 , parsed from the command line arguments in the form --name=value.
+//without arguments the run behaves exactly as before (input.txt in , output.txt out).
+public class RunOptions {
+    private int cacheSize = 1024;
+    private boolean printCacheStats = false;
+    private int threads = 1;
+    private String ordering = "product";
+    private boolean printOrderStats = false;
+    private boolean streamingParser = true;
+    private boolean bayesBall = false;
+    private boolean stream = false;
+    private int streamCapacity = 1024;
+    private int enumerationThreads = 1;
+    private int parallelJoinThreshold = 0;
+    private boolean fusedElimination = false;
+    private int samples = 100000;
+    private long seed = 1;
+    private int samplerThreads = 1;
+    private int chains = 4;
+    private int burnIn = 1000;
+    private int thinning = 1;
+    private boolean grouping = true;
+    private String metricsFile = null;
+    private long maxCells = 0;
+    private long maxOperations = 0;
+    private boolean reroute = true;
+    private double sparseDensity = 0;
+
+    //parsing the arguments , an unknown option or a bad value stops the run with an explanation.
+    public static RunOptions parse(String[] args) {
+        RunOptions options = new RunOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Error: options should look like --name=value but got " + arg);
+            }
+            int equalsIndex = arg.indexOf('=');
+            String name = equalsIndex == -1 ? arg.substring(2) : arg.substring(2, equalsIndex);
+            String value = equalsIndex == -1 ? "" : arg.substring(equalsIndex + 1);
+            switch (name) {
+                case "cache-size":
+                    options.cacheSize = parseInt(name, value, 0);
+                    break;
+                case "cache-stats":
+                    options.printCacheStats = true;
+                    break;
+                case "threads":
+                    //"auto" takes all the cores of the machine.
+                    options.threads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : parseInt(name, value, 1);
+                    break;
+                case "ordering":
+                    //checking the name now so a typo stops the run before any query.
+                    options.ordering = EliminationOrdering.forName(value).getName();
+                    break;
+                case "parser":
+                    //stax reads the network in one streaming pass , dom is the original document parser.
+                    if (!value.equals("stax") && !value.equals("dom")) {
+                        throw new IllegalArgumentException("Error: the value of --parser should be stax or dom but got " + value);
+                    }
+                    options.streamingParser = value.equals("stax");
+                    break;
+                case "bayes-ball":
+                    options.bayesBall = true;
+                    break;
+                case "stream":
+                    options.stream = true;
+                    break;
+                case "stream-capacity":
+                    options.streamCapacity = parseInt(name, value, 1);
+                    break;
+                case "enumeration-threads":
+                    //the fork/join workers of algorithm 1 , 1 keeps the enumeration on the thread of the query.
+                    options.enumerationThreads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : parseInt(name, value, 1);
+                    break;
+                case "parallel-join":
+                    //the output size of a VE join or elimination from which it is split across the fork/join workers , 0 is off.
+                    options.parallelJoinThreshold = parseInt(name, value, 0);
+                    break;
+                case "fused-elimination":
+                    options.fusedElimination = true;
+                    break;
+                case "samples":
+                    options.samples = parseInt(name, value, 1);
+                    break;
+                case "seed":
+                    try {
+                        options.seed = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Error: the value of --seed is not a number: " + value);
+                    }
+                    break;
+                case "sampler-threads":
+                    options.samplerThreads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : parseInt(name, value, 1);
+                    break;
+                case "chains":
+                    options.chains = parseInt(name, value, 1);
+                    break;
+                case "burn-in":
+                    options.burnIn = parseInt(name, value, 0);
+                    break;
+                case "thinning":
+                    options.thinning = parseInt(name, value, 1);
+                    break;
+                case "no-grouping":
+                    options.grouping = false;
+                    break;
+                case "metrics":
+                    //the side file of the per query metrics , the extension chooses the format.
+                    MetricsWriter.checkFileName(value);
+                    options.metricsFile = value;
+                    break;
+                case "max-cells":
+                    //the memory budget of a query , the cells of its largest factor , 0 is off.
+                    options.maxCells = parseLong(name, value, 0);
+                    break;
+                case "max-operations":
+                    //the time budget of a query , its estimated operations , 0 is off.
+                    options.maxOperations = parseLong(name, value, 0);
+                    break;
+                case "over-budget":
+                    if (!value.equals("reroute") && !value.equals("reject")) {
+                        throw new IllegalArgumentException("Error: the value of --over-budget should be reroute or reject but got " + value);
+                    }
+                    options.reroute = value.equals("reroute");
+                    break;
+                case "sparse-density":
+                    //the largest share of entries that are not 0 of a factor VE keeps sparse , 0 is off.
+                    try {
+                        options.sparseDensity = Double.parseDouble(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Error: the value of --sparse-density is not a number: " + value);
+                    }
+                    if (!(options.sparseDensity >= 0 && options.sparseDensity <= 1)) {
+                        throw new IllegalArgumentException("Error: the value of --sparse-density should be between 0 and 1");
+                    }
+                    break;
+                case "order-stats":
+                    options.printOrderStats = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Error: unknown option --" + name);
+            }
+        }
+        return options;
+    }
+
+    //parsing a number option and checking its lower bound.
+    private static int parseInt(String name, String value, int min) {
+        int res;
+        try {
+            res = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error: the value of --" + name + " is not a number: " + value);
+        }
+        if (res < min) {
+            throw new IllegalArgumentException("Error: the value of --" + name + " should be at least " + min);
+        }
+        return res;
+    }
+
+    //the same for the options that can be bigger than an int.
+    private static long parseLong(String name, String value, long min) {
+        long res;
+        try {
+            res = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error: the value of --" + name + " is not a number: " + value);
+        }
+        if (res < min) {
+            throw new IllegalArgumentException("Error: the value of --" + name + " should be at least " + min);
+        }
+        return res;
+    }
+
+    //getters
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public boolean isPrintCacheStats() {
+        return printCacheStats;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getOrdering() {
+        return ordering;
+    }
+
+    public boolean isPrintOrderStats() {
+        return printOrderStats;
+    }
+
+    public boolean isStreamingParser() {
+        return streamingParser;
+    }
+
+    public boolean isBayesBall() {
+        return bayesBall;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public int getStreamCapacity() {
+        return streamCapacity;
+    }
+
+    public int getEnumerationThreads() {
+        return enumerationThreads;
+    }
+
+    public int getParallelJoinThreshold() {
+        return parallelJoinThreshold;
+    }
+
+    public boolean isFusedElimination() {
+        return fusedElimination;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getSamplerThreads() {
+        return samplerThreads;
+    }
+
+    public int getChains() {
+        return chains;
+    }
+
+    public int getBurnIn() {
+        return burnIn;
+    }
+
+    public int getThinning() {
+        return thinning;
+    }
+
+    public boolean isGrouping() {
+        return grouping;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public long getMaxCells() {
+        return maxCells;
+    }
+
+    public long getMaxOperations() {
+        return maxOperations;
+    }
+
+    public boolean isReroute() {
+        return reroute;
+    }
+
+    public double getSparseDensity() {
+        return sparseDensity;
+    }
+}
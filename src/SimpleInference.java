@@ -1,132 +1,212 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 //this class implements the simple inference algorithm , aka algorithm 1.
+//with a fork/join pool the nominator and the denominator sums run at the same time and each of them is split
+//by the outcomes of the first hidden variables , the results and the counts are the same as on one thread.
+//it builds no factors , the elimination order of its metrics is the order the hidden variables are summed in.
 public class SimpleInference extends BayesianAlgorithm {
+    //below this number of hidden assignments the tasks cost more than the enumeration itself.
+    private static final long PARALLEL_THRESHOLD = 1 << 12;
+
+    private final ForkJoinPool pool; // null for the sequential enumeration
+
+    public SimpleInference() {
+        this(null);
+    }
+
+    public SimpleInference(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     //we are applying bayesian rule on the query , and then calculating the marginal probability for each query for
     //the denominator and the nominator while not calculating again the nominator.
     @Override
-    public void calculateProbability(Query query, List<CPT> CPTS) {
+    public void calculateProbability(Query query, BayesianNetwork network) {
         additionCount = 0;
         multiplicationCount = 0;
-        Double extracted = tryExtractProbability(query, CPTS);
+        eliminationOrder = new int[0];
+        Double extracted = tryExtractProbability(query, network);
         if (extracted != null) {
             this.probability = extracted;
             return;
         }
-        //grouping all the variables and their outcomes in a map.
-        Set<String> allVariables = new HashSet<>();
-        Map<String, List<String>> variableAndOutcomePairs = new HashMap<>();
-        //for each CPT we get their variable and outcomes and add them to the map.
-        for (CPT CPT : CPTS) {
-            String variableName = CPT.getVariable().getName();
-            allVariables.add(variableName);
-            variableAndOutcomePairs.put(variableName, CPT.getVariable().getOutcomes());
-        }
-        //creating the hidden variables list since the algorithm is based on their assignments
-        Map<String, String> queryVariables = query.getQuery();
-        Map<String, String> evidenceVariables = query.getEvidence();
-        Set<String> hiddenVariables = new HashSet<>(allVariables);
-        hiddenVariables.removeAll(queryVariables.keySet());
-        hiddenVariables.removeAll(evidenceVariables.keySet());
-        List<String> hiddenVariableList = new ArrayList<>(hiddenVariables);
+        //the assignment array holds the query and the evidence , -1 marks the variables we still have to assign.
+        int[] assignment = network.encode(query.getEvidence());
+        network.encodeInto(query.getQuery(), assignment);
+        EnumerationEngine engine = createEngine(assignment, network);
+        eliminationOrder = engine.getOrder();
+        int[] queryVariables = new int[query.getQuery().size()];
+        int i = 0;
+        for (String name : query.getQuery().keySet()) {
+            queryVariables[i++] = network.getId(name);
+        }
         //calculating the nominator and denominator of the bayesian rule.
-        double nominator = calculateMarginalProbability(queryVariables, evidenceVariables, hiddenVariableList, variableAndOutcomePairs, CPTS);
-        List<String> queryVariableList = new ArrayList<>(queryVariables.keySet());
-        double denominator = calculateDenominator(nominator, queryVariableList, queryVariables, hiddenVariableList, variableAndOutcomePairs, evidenceVariables, CPTS);
+        double nominator;
+        double denominator;
+        if (pool != null && engine.getLeafCount() >= PARALLEL_THRESHOLD) {
+            List<int[]> assignments = new ArrayList<>();
+            assignments.add(assignment);
+            assignments.addAll(otherQueryAssignments(queryVariables, assignment, network));
+            double[] sums = sumInParallel(assignments, engine);
+            nominator = sums[0];
+            denominator = addPartials(sums);
+        } else {
+            nominator = engine.sum(assignment);
+            denominator = calculateDenominator(nominator, queryVariables, assignment, engine, network);
+        }
+        additionCount += engine.getAdditionCount();
+        multiplicationCount += engine.getMultiplicationCount();
         //returning the final result of the bayesian rule.
         this.probability = nominator / denominator;
 
 
     }
-    //as we discussed we turning the nominator (for example) into a marginal probabilities
-    //so this method calculates the marginal probability.
-    private double calculateMarginalProbability(Map<String, String> queryVariables, Map<String, String> evidenceVariables, List<String> hiddenVarToSum, Map<String, List<String>> variableAndOutcomePairs, List<CPT> CPTS) {
-        Map<String, String> currentAssignment = new HashMap<>();
-        currentAssignment.putAll(queryVariables);
-        currentAssignment.putAll(evidenceVariables);
-        return sumPossibilities(hiddenVarToSum, 0, currentAssignment, variableAndOutcomePairs, CPTS);
-    }
-    //recursive method to calculate the sum of the probabilities of the hidden variables.
-    //every time added to the current sun the new calculation of the joint probability
-    private double sumPossibilities(List<String> hiddenVarToSum, int index, Map<String, String> currentAssignment, Map<String, List<String>> variableAndOutcomePairs, List<CPT> CPTS) {
-        if (index == hiddenVarToSum.size()) {
-            return calculateJointProbability(currentAssignment, CPTS);
-        }
-
-        String currVariable = hiddenVarToSum.get(index);
-        List<String> outcomes = variableAndOutcomePairs.get(currVariable);
-        double sum = 0.0;
-        boolean firstOutcome = true;
-        for (String outcome : outcomes) {
-            currentAssignment.put(currVariable, outcome);
-            double currentValue = sumPossibilities(hiddenVarToSum, index + 1, currentAssignment, variableAndOutcomePairs, CPTS);
-            if (firstOutcome) {
-                sum = currentValue;
-                firstOutcome = false;
-            } else {
-                sum += currentValue;
-                additionCount++;
+
+    //every entry of the posterior is one of the sums of the bayesian rule , so all of them come from the sums of one query.
+    //the denominator of every entry adds the other sums in the same order as a single query would , so the probabilities
+    //and the counts are the ones of the single queries.
+    @Override
+    public Posterior calculatePosterior(Query query, BayesianNetwork network) {
+        additionCount = 0;
+        multiplicationCount = 0;
+        eliminationOrder = new int[0];
+        if (tryExtractProbability(query, network) != null) {
+            //the answer is in a CPT , every entry is a lookup.
+            return super.calculatePosterior(query, network);
+        }
+        int[] assignment = network.encode(query.getEvidence());
+        network.encodeInto(query.getQuery(), assignment);
+        EnumerationEngine engine = createEngine(assignment, network);
+        eliminationOrder = engine.getOrder();
+        Posterior posterior = new Posterior(query, network);
+        List<int[]> assignments = new ArrayList<>();
+        for (int entry = 0; entry < posterior.size(); entry++) {
+            int[] entryAssignment = assignment.clone();
+            posterior.assign(entry, entryAssignment);
+            assignments.add(entryAssignment);
+        }
+        double[] sums;
+        if (pool != null && engine.getLeafCount() >= PARALLEL_THRESHOLD) {
+            sums = sumInParallel(assignments, engine);
+        } else {
+            sums = new double[assignments.size()];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = engine.sum(assignments.get(i));
+            }
+        }
+        additionCount = engine.getAdditionCount() + sums.length - 1;
+        multiplicationCount = engine.getMultiplicationCount();
+        for (int entry = 0; entry < sums.length; entry++) {
+            double denominator = sums[entry];
+            for (int other = 0; other < sums.length; other++) {
+                if (other != entry) denominator += sums[other];
             }
+            posterior.set(entry, sums[entry] / denominator, additionCount, multiplicationCount);
         }
-        currentAssignment.remove(currVariable);
-        return sum;
+        this.probability = posterior.getProbability(sums.length - 1);
+        return posterior;
     }
-    //to simply we are using the lookup algorithm .
-    private double calculateJointProbability(Map<String, String> assignment, List<CPT> CPTS) {
-        Query query = new Query(assignment, new HashMap<>(), 0, true);
-        BayesianAlgorithm lookup = AlgorithmFactory.createAlgorithm(0);
-        lookup.calculateProbability(query, CPTS);
-        double jointProbability = lookup.getProbability();
-        multiplicationCount += lookup.getMultiplicationCount();
-        return jointProbability;
+
+    @Override
+    public boolean computesPosteriorAtOnce() {
+        return true;
+    }
+
+    //the engine of the query , the hidden variables are the CPT variables that the assignment leaves unassigned.
+    private EnumerationEngine createEngine(int[] assignment, BayesianNetwork network) {
+        //creating the hidden variables list since the algorithm is based on their assignments , every CPT variable that is not assigned.
+        List<Integer> hiddenVariableList = new ArrayList<>();
+        for (int c = 0; c < network.getCPTCount(); c++) {
+            int variable = network.getCPTVariable(c);
+            if (assignment[variable] == -1) {
+                hiddenVariableList.add(variable);
+            }
+        }
+        Collections.sort(hiddenVariableList);
+        int[] hiddenVariables = new int[hiddenVariableList.size()];
+        for (int i = 0; i < hiddenVariables.length; i++) {
+            hiddenVariables[i] = hiddenVariableList.get(i);
+        }
+        //the engine sums in topological order and keeps the partial products , the counts are the same as the plain enumeration.
+        return new EnumerationEngine(network, assignment, hiddenVariables);
     }
+
     //the same logic to the denominator but we are not calculating the nominator again , but adding it.
-    private double calculateDenominator ( double nominator, List<
-    String > queryVariableList, Map < String, String > queryVariables, List < String > hiddenVariableList, Map < String, List < String >> variableAndOutcomePairs, Map < String, String > evidenceVariables, List <CPT> CPTS)
-    {
-        double res = nominator;
-        if (queryVariableList.isEmpty()) {
-            return res;
+    private double calculateDenominator(double nominator, int[] queryVariables, int[] assignment, EnumerationEngine engine, BayesianNetwork network) {
+        List<int[]> others = otherQueryAssignments(queryVariables, assignment, network);
+        double[] sums = new double[others.size() + 1];
+        sums[0] = nominator;
+        for (int i = 0; i < others.size(); i++) {
+            sums[i + 1] = engine.sum(others.get(i));
         }
-        List<Map<String, String>> allQueryAssignments = generateAllAssignments(variableAndOutcomePairs, queryVariableList);
-        allQueryAssignments.removeIf(assignment -> assignment.equals(queryVariables));
-        for (Map<String, String> assignment : allQueryAssignments) {
-            double partialProbability = calculateMarginalProbability(assignment, evidenceVariables, hiddenVariableList, variableAndOutcomePairs, CPTS);
-            res += partialProbability;
-            additionCount++;
+        return addPartials(sums);
+    }
+
+    //the sums of the assignments (the nominator first and then the other query assignments) , every sum is a task of the pool.
+    private double[] sumInParallel(List<int[]> assignments, EnumerationEngine engine) {
+        List<RecursiveTask<Double>> tasks = new ArrayList<>();
+        for (int[] assignment : assignments) {
+            tasks.add(engine.sumTask(assignment, pool));
         }
-        return res;
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        double[] sums = new double[tasks.size()];
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = tasks.get(i).join();
+        }
+        return sums;
     }
-    //generating all the possible assignments of the variables. for example if we have A,B,C with outcomes {0,1} the possible assignments are:
-    // {A=0,B=0,C=0} , {A=0,B=0,C=1} , {A=0,B=1,C=0} , {A=0,B=1,C=1} , {A=1,B=0,C=0} , {A=1,B=0,C=1} , {A=1,B=1,C=0} , {A=1,B=1,C=1}.
-    private List<Map<String, String>> generateAllAssignments
-    (Map < String, List < String >> variableAndOutcomePairs, List < String > variableList){
-        List<Map<String, String>> res = new ArrayList<>();
-        helperGenerator(variableList, 0, new HashMap<>(), variableAndOutcomePairs, res);
+
+    //adding the marginals to the nominator by the order of the query assignments , so the result doesn't depend on the threads.
+    private double addPartials(double[] sums) {
+        double res = sums[0];
+        for (int i = 1; i < sums.length; i++) {
+            res += sums[i];
+            additionCount++;
+        }
         return res;
     }
-    private void helperGenerator (List < String > variableList,int index, Map<
-    String, String > currentAssignment, Map < String, List < String >> variableAndOutcomePairs, List < Map < String, String >> res)
-    {
-        if (index == variableList.size()) {
-            res.add(new HashMap<>(currentAssignment));
-            return;
+
+    //all the other assignments of the query variables (the first changes the slowest) , each one as a full assignment array.
+    private List<int[]> otherQueryAssignments(int[] queryVariables, int[] assignment, BayesianNetwork network) {
+        List<int[]> res = new ArrayList<>();
+        if (queryVariables.length == 0) {
+            return res;
         }
-        String currVariable = variableList.get(index);
-        List<String> outcomes = variableAndOutcomePairs.get(currVariable);
-        for (String outcome : outcomes) {
-            currentAssignment.put(currVariable, outcome);
-            helperGenerator(variableList, index + 1, currentAssignment, variableAndOutcomePairs, res);
-        }
-        currentAssignment.remove(currVariable);
-        String variableName = variableList.get(index);
-        List<String> outcomesForVariable = variableAndOutcomePairs.get(variableName);
-        //null check
-        if(outcomesForVariable == null){
-            System.out.println("Error: outcomes for variable " + variableName + "is null");
-        } else if(outcomesForVariable.isEmpty()) {
-            System.out.println("Error: outcomes for variable " + variableName + "is empty");
+        int[] queryOutcomes = new int[queryVariables.length];
+        for (int i = 0; i < queryVariables.length; i++) {
+            queryOutcomes[i] = assignment[queryVariables[i]];
         }
+        int[] current = new int[queryVariables.length];
+        boolean done = false;
+        while (!done) {
+            if (!Arrays.equals(current, queryOutcomes)) {
+                int[] other = assignment.clone();
+                for (int i = 0; i < queryVariables.length; i++) {
+                    other[queryVariables[i]] = current[i];
+                }
+                res.add(other);
+            }
+            //moving to the next assignment of the query variables.
+            done = true;
+            for (int k = queryVariables.length - 1; k >= 0; k--) {
+                current[k]++;
+                if (current[k] < network.getCardinality(queryVariables[k])) {
+                    done = false;
+                    break;
+                }
+                current[k] = 0;
+            }
+        }
+        return res;
     }
 
 
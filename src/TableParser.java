@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+//parses the text of a TABLE element straight into a double array , the numbers are separated by whitespace.
+//the text can come in chunks (the streaming parser gets it in pieces) and a number may be cut between two chunks ,
+//so the characters of the current number are kept in a small buffer until the whitespace after it.
+//a plain decimal number like 0.95 or 1e-3 is converted without creating a String , anything else goes to Double.parseDouble.
+public class TableParser {
+    //the powers of ten that a double holds exactly , m * 10^e and m / 10^e are then rounded once like Double.parseDouble does.
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private double[] values;
+    private int count = 0;
+    private char[] token = new char[32];
+    private int tokenLength = 0;
+
+    //constructor , the expected size is only a hint for the first allocation (for example the size of the CPT).
+    public TableParser(int expectedSize) {
+        this.values = new double[Math.max(expectedSize, 1)];
+    }
+
+    //parsing a whole table at once.
+    public static double[] parse(String table, int expectedSize) {
+        TableParser parser = new TableParser(expectedSize);
+        parser.append(table.toCharArray(), 0, table.length());
+        return parser.finish();
+    }
+
+    //adding the next chunk of the text.
+    public void append(char[] text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            char c = text[i];
+            if (Character.isWhitespace(c)) {
+                endToken();
+            } else {
+                if (tokenLength == token.length) {
+                    token = Arrays.copyOf(token, token.length * 2);
+                }
+                token[tokenLength++] = c;
+            }
+        }
+    }
+
+    //the numbers that were parsed , the array is exactly as long as the table.
+    public double[] finish() {
+        endToken();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private void endToken() {
+        if (tokenLength == 0) return;
+        if (count == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[count++] = parseToken();
+        tokenLength = 0;
+    }
+
+    //the fast path reads [sign] digits [. digits] [e [sign] digits] into a long and a power of ten ,
+    //it is exact when the digits fit in 53 bits and the power of ten is at most 22 , otherwise the JDK parses the number.
+    private double parseToken() {
+        int i = 0;
+        boolean negative = false;
+        if (token[i] == '-' || token[i] == '+') {
+            negative = token[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < tokenLength; i++) {
+            char c = token[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    if (++significantDigits > 18) return slowParse();
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (seenPoint) exponent--;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) return slowParse();
+        if (i < tokenLength) {
+            if (token[i] != 'e' && token[i] != 'E' || ++i == tokenLength) return slowParse();
+            boolean negativeExponent = false;
+            if (token[i] == '-' || token[i] == '+') {
+                negativeExponent = token[i] == '-';
+                if (++i == tokenLength) return slowParse();
+            }
+            int written = 0;
+            for (; i < tokenLength; i++) {
+                char c = token[i];
+                if (c < '0' || c > '9' || written > 1000) return slowParse();
+                written = written * 10 + (c - '0');
+            }
+            exponent += negativeExponent ? -written : written;
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return slowParse();
+        }
+        return negative ? -value : value;
+    }
+
+    //anything the fast path doesn't handle , including the malformed numbers (which throw NumberFormatException as before).
+    private double slowParse() {
+        return Double.parseDouble(new String(token, 0, tokenLength));
+    }
+}
@@ -1,23 +1,21 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 //this class represents a variable in bayesian network.
+//it is immutable , so one object is shared by every CPT and query that mentions the variable.
 public class Variable {
     //it has two fields his name for example "A" or "B" and a list of outcomes for example {True, False} or {0, 1}.
     private final String name;
-    private List<String> outcomes;
+    private final List<String> outcomes;
 
     //constructor
-    //first assigning the name a value because it appears first in the xml file and also initializing the outcomes list as arraylist.
-    public Variable(String name) {
+    //the outcomes are given by the order they appear in the xml file , the list is copied so the caller can't change it later.
+    public Variable(String name, List<String> outcomes) {
         this.name = name;
-        this.outcomes = new ArrayList<>();
+        this.outcomes = Collections.unmodifiableList(new ArrayList<>(outcomes));
     }
-    //adding the outcomes to the list one by one since that's how they appear in the xml file.
-    public void addOutcome(String outcome) {
-        outcomes.add(outcome);
-    }
-    //getters and setters
+    //getters
     public String getName() {
         return name;
     }
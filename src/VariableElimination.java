@@ -1,262 +1,408 @@
-import java.sql.SQLOutput;
 import java.util.*;
-import java.util.stream.Collectors;
 //this class represents the variable elimination algorithm with heuristic of sorting the hidden variables lexicographically.
+//it runs on the compiled network , the variables are their int ids and the factors are walked by strides.
+//the order of the hidden variables comes from an EliminationOrdering , the classic VE uses the lexicographic one.
+//with the relevance pruning on , the ancestors are narrowed further by Bayes-ball to the requisite ones (see BayesBall).
+//a join or an elimination whose output reaches the parallel threshold is split across fork/join workers (see FactorKernels).
+//with the fused elimination on , every hidden variable is summed straight out of its factors without the joined table.
+//with a sparse density (more than 0) every factor VE makes whose share of entries that are not 0 is at most the density is kept
+//sparse , and the joins , eliminations and restrictions of sparse factors skip the 0 entries. the CPT and restricted factors
+//are made sparse straight from their source , and a step with a sparse factor takes the sparse join even when fused.
 public class VariableElimination extends BayesianAlgorithm {
+    private final EliminationOrdering ordering;
+    private final boolean relevancePruning;
+    private final int parallelThreshold; // the output size from which the factor operations run in parallel , 0 is off
+    private final boolean fusedElimination;
+    private final double sparseDensity; // the largest share of entries that are not 0 of a sparse factor , 0 is off
+    //what the relevance pruning removed in the last query , -1 when it is off.
+    private int prunedFactors = -1;
+    private int prunedHiddenVariables = -1;
 
+    //constructors
+    public VariableElimination() {
+        this(new LexicographicOrdering());
+    }
+
+    public VariableElimination(EliminationOrdering ordering) {
+        this(ordering, false);
+    }
+
+    public VariableElimination(EliminationOrdering ordering, boolean relevancePruning) {
+        this(ordering, relevancePruning, 0, false);
+    }
+
+    public VariableElimination(EliminationOrdering ordering, boolean relevancePruning, int parallelThreshold, boolean fusedElimination) {
+        this(ordering, relevancePruning, parallelThreshold, fusedElimination, 0);
+    }
+
+    public VariableElimination(EliminationOrdering ordering, boolean relevancePruning, int parallelThreshold, boolean fusedElimination,
+                               double sparseDensity) {
+        this.ordering = ordering;
+        this.relevancePruning = relevancePruning;
+        this.parallelThreshold = parallelThreshold;
+        this.fusedElimination = fusedElimination;
+        this.sparseDensity = sparseDensity;
+    }
+
+    @Override
+    public void calculateProbability(Query query, BayesianNetwork network) {
+        Factor finalFactor = eliminateAll(query, network);
+        if (finalFactor == null) {
+            return;
+        }
+        int[] knownAssignment = network.encode(query.getEvidence());
+        network.encodeInto(query.getQuery(), knownAssignment);
+        this.probability = readProbability(finalFactor, knownAssignment);
+    }
+
+    //the final factor is over the query variables , so every entry of the posterior is read from the same elimination.
     @Override
-    public void calculateProbability(Query query, List<CPT> cpts) {
+    public Posterior calculatePosterior(Query query, BayesianNetwork network) {
+        Factor finalFactor = eliminateAll(query, network);
+        if (finalFactor == null) {
+            //the answer is in a CPT , every entry is a lookup.
+            return super.calculatePosterior(query, network);
+        }
+        Posterior posterior = new Posterior(query, network);
+        int[] knownAssignment = network.encode(query.getEvidence());
+        int eliminationAdditions = additionCount;
+        for (int entry = 0; entry < posterior.size(); entry++) {
+            posterior.assign(entry, knownAssignment);
+            additionCount = eliminationAdditions;
+            double entryProbability = readProbability(finalFactor, knownAssignment);
+            posterior.set(entry, entryProbability, additionCount, multiplicationCount);
+        }
+        this.probability = posterior.getProbability(posterior.size() - 1);
+        return posterior;
+    }
+
+    @Override
+    public boolean computesPosteriorAtOnce() {
+        return true;
+    }
+
+    //the elimination of all the hidden variables , returns the normalized final factor or null when the answer is in a CPT
+    //(then the probability is already set).
+    private Factor eliminateAll(Query query, BayesianNetwork network) {
         additionCount = 0;
         multiplicationCount = 0;
+        inducedWidth = 0;
+        largestFactorSize = 0;
+        prunedFactors = relevancePruning ? 0 : -1;
+        prunedHiddenVariables = relevancePruning ? 0 : -1;
+        factorsCreated = 0;
+        cellsAllocated = 0;
+        eliminationOrder = new int[0];
         // Check if the probability can be extracted directly from the CPTs
         // If so, extract it and return
-        Double extracted = tryExtractProbability(query, cpts);
+        Double extracted = tryExtractProbability(query, network);
         if (extracted != null) {
             this.probability = extracted;
-            return;
+            return null;
         }
-        //deep copy the CPTs to avoid modifying the originals  , thanks to this the next query will not be affected by the previous one.
-        List<CPT> cptsCopy = deepCopyCPTs(cpts);
+        //the query and the evidence as assignment arrays indexed by id , -1 marks an unassigned variable.
+        int[] evidence = network.encode(query.getEvidence());
+        int[] queryAssignment = network.encode(query.getQuery());
+        int[] knownAssignment = evidence.clone();
+        network.encodeInto(query.getQuery(), knownAssignment);
         //getting the ancestors of the query and evidence variables , in my implementation Va can be a parent of Va.
-        Set<String> ancestors = getAncestorsFromCPTs(cptsCopy, query.getQuery().keySet(), query.getEvidence().keySet());
+        //the shared network is never modified so the next query will not be affected by the previous one.
+        boolean[] ancestors = getAncestors(network, knownAssignment);
+        //the relevant variables , the ancestors or only the requisite ones (a subset of the ancestors).
+        boolean[] relevant = ancestors;
+        if (relevancePruning) {
+            relevant = BayesBall.requisite(network, queryAssignment, evidence);
+            countPruned(network, ancestors, relevant, knownAssignment);
+        }
         //now making only the factors that are related to the query and evidence variables , preprocessing.
         List<Factor> factors = new ArrayList<>();
-        for (CPT cpt : cptsCopy) {
-            if (ancestors.contains(cpt.getVariable().getName())) {
-                factors.add(convertCPTtoFactor(cpt));
+        for (int cpt = 0; cpt < network.getCPTCount(); cpt++) {
+            if (relevant[network.getCPTVariable(cpt)]) {
+                factors.add(convertCPTtoFactor(network, cpt));
             }
         }
         //now we are going to set the evidence values to the factors , and by that we are going to restrict the factors.
-        restrictEvidence(factors, query.getEvidence());
+        restrictEvidence(factors, evidence);
         //extra preprocess to be sure that all the factors are query  , evidence or hidden that are ancestor of the query or evidence.
-        pruneFactors(factors, ancestors);
-        //getting the hidden variables.
-        Set<String> hiddenVariables = new HashSet<>(ancestors);
-        hiddenVariables.removeAll(query.getQuery().keySet());
-        hiddenVariables.removeAll(query.getEvidence().keySet());
+        pruneFactors(factors, relevant);
+        for (Factor factor : factors) {
+            largestFactorSize = Math.max(largestFactorSize, factor.getSize());
+        }
+        //getting the hidden variables , in the order the orderings break their ties by.
+        List<Integer> hiddenVariables = hiddenVariables(query, network, relevant);
+        //the order only depends on which variables are query and evidence , so it is cached per network by that signature.
+        //on a hit we follow the cached order , otherwise we choose the variables one by one and store the order we got.
+        EliminationOrderCache orderCache = EliminationOrderCache.forNetwork(network);
+        String orderingName = relevancePruning ? ordering.getName() + "+bayes-ball" : ordering.getName();
+        String signature = EliminationOrderCache.signature(orderingName, queryAssignment, evidence);
+        int[] cachedOrder = orderCache.get(signature);
+        int[] chosenOrder = new int[hiddenVariables.size()];
+        int step = 0;
         //hidden variables elimination process.
         while (!hiddenVariables.isEmpty()) {
-            //every iteration we are going to sort the hidden variables , in classic VE sorting lexicographically .
-            List<String> hiddenList = new ArrayList<>(hiddenVariables);
-            String hidden = chooseNextToEliminate(hiddenList, factors);
-            hiddenVariables.remove(hidden);
+            //every iteration we are going to choose the next hidden variable , in classic VE lexicographically .
+            int hidden = cachedOrder != null ? cachedOrder[step] : ordering.chooseNext(hiddenVariables, factors);
+            hiddenVariables.remove(Integer.valueOf(hidden));
+            chosenOrder[step++] = hidden;
             //getting the factors that has the hidden variable in them.
             List<Factor> relatedFactors = getFactorsMentioning(hidden, factors);
             factors.removeAll(relatedFactors);
             if (relatedFactors.isEmpty()) continue;
-            // join all related factors
-            Factor joined = joinFactors(relatedFactors);
-            //eliminating the hidden variable from the joined factor.
-            Factor last = eliminate(joined, hidden);
+            Factor last;
+            if (fusedElimination && !anySparse(relatedFactors)) {
+                //joining and eliminating in one pass without the joined table , sparse factors take the sparse join instead.
+                last = joinAndEliminate(relatedFactors, hidden);
+            } else {
+                // join all related factors
+                Factor joined = joinFactors(relatedFactors);
+                inducedWidth = Math.max(inducedWidth, joined.getVariables().length - 1);
+                //eliminating the hidden variable from the joined factor.
+                last = eliminate(joined, hidden);
+            }
             //add adding the last factor to the list of factors.
             factors.add(last);
         }
-        //another join all the last factors that are left.
-        Factor finalFactor = joinFactors(factors);
+        if (cachedOrder == null) {
+            orderCache.put(signature, chosenOrder);
+        }
+        eliminationOrder = chosenOrder;
+        //another join all the last factors that are left , the final factor is small so it is read dense.
+        Factor finalFactor = joinFactors(factors).toDense();
         // normalizing the final factor to get the probability.
         normalize(finalFactor);
-        //mapping the query.
-        Map<String, String> knownAssignment = new HashMap<>(query.getQuery());
-        knownAssignment.putAll(query.getEvidence());
+        return finalFactor;
+    }
+
+    //reading the probability of the known assignment from the normalized final factor.
+    private double readProbability(Factor finalFactor, int[] knownAssignment) {
         //checking if there are any unassigned variables in the final factor to marginalize them.
-        Set<String> finalVars = new HashSet<>();
-        for (Variable variable : finalFactor.getVariables()) {
-            finalVars.add(variable.getName());
+        //the assigned ones give a fixed offset and the unassigned ones are walked by their strides.
+        int[] finalVars = finalFactor.getVariables();
+        List<Integer> unassigned = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < finalVars.length; i++) {
+            if (knownAssignment[finalVars[i]] == -1) {
+                unassigned.add(i);
+            } else {
+                offset += knownAssignment[finalVars[i]] * finalFactor.getStride(i);
+            }
         }
-        Set<String> unassigned = new HashSet<>(finalVars);
-        unassigned.removeAll(knownAssignment.keySet());
 
         //if all the values are assigned we can just get the probability of the query.
         if (unassigned.isEmpty()) {
-            List<Double> probs = finalFactor.getProbabilities();
             //adding the addition count because of the summation of the probabilities.
-            if (probs.size() > 1) {
-                additionCount += probs.size() - 1;
+            if (finalFactor.getSize() > 1) {
+                additionCount += finalFactor.getSize() - 1;
             }
-            this.probability = finalFactor.getProbability(knownAssignment);
-            return;
+            return finalFactor.getValue(offset);
         }
 
         // otherwise, marginalize over them:
-        double result = 0.0;
-        List<Map<String, String>> assignmentsOverFactor = generateAllAssignmentsForVars(finalFactor.getVariables(), unassigned);
-        boolean isFirst = true;
-        for (Map<String, String> assignment : assignmentsOverFactor) {
-            Map<String, String> full = new HashMap<>(knownAssignment);
-            full.putAll(assignment);
-            double prob = finalFactor.getProbability(full);
-            if(isFirst) {
-                result = prob;
-                isFirst = false;
-            } else {
-                result += prob;
-                additionCount++;
-            }
+        int[] cardinalities = new int[unassigned.size()];
+        int[] strides = new int[unassigned.size()];
+        for (int i = 0; i < unassigned.size(); i++) {
+            cardinalities[i] = finalFactor.getCardinality(unassigned.get(i));
+            strides[i] = finalFactor.getStride(unassigned.get(i));
+        }
+        double[] entries = gather(finalFactor.getValues(), offset, cardinalities, strides);
+        double result = entries[0];
+        for (int i = 1; i < entries.length; i++) {
+            result += entries[i];
+            additionCount++;
         }
-        this.probability = result;
+        return result;
     }
 
     // ----- Helper methods -----
 
-    // deep copy CPTs to avoid modifying originals
-    //this method deep copies its Variable  , its parents and its probabilities.
-    private List<CPT> deepCopyCPTs(List<CPT> cpts) {
-        List<CPT> copied = new ArrayList<>();
-        for (CPT cpt : cpts) {
-            Variable newVar = new Variable(cpt.getVariable().getName());
-            for (String outcome : cpt.getVariable().getOutcomes()) newVar.addOutcome(outcome);
-
-            CPT newCPT = new CPT(newVar);
-            for (Variable parent : cpt.getParents()) {
-                Variable newParent = new Variable(parent.getName());
-                for (String outcome : parent.getOutcomes()) newParent.addOutcome(outcome);
-                newCPT.addParent(newParent);
+    // method to convert a CPT of the compiled network to a Factor
+    private Factor convertCPTtoFactor(BayesianNetwork network, int cpt) {
+        // the variable and its parents , the main variable changes the fastest and the parents in reverse order.
+        int[] originalOrder = network.getCPTScope(cpt);
+        int[] cptStrides = network.getCPTStrides(cpt);
+        // sort variable list by id (to match the factor layout) , the scope is tiny so a simple insertion sort is enough.
+        int[] sortedVars = originalOrder.clone();
+        int[] sourceStrides = cptStrides.clone();
+        for (int i = 1; i < sortedVars.length; i++) {
+            for (int j = i; j > 0 && sortedVars[j - 1] > sortedVars[j]; j--) {
+                int tempVar = sortedVars[j];
+                sortedVars[j] = sortedVars[j - 1];
+                sortedVars[j - 1] = tempVar;
+                int tempStride = sourceStrides[j];
+                sourceStrides[j] = sourceStrides[j - 1];
+                sourceStrides[j - 1] = tempStride;
             }
-            newCPT.setProbabilities(new ArrayList<>(cpt.getProbabilities()));
-            copied.add(newCPT);
         }
-        return copied;
-    }
-    //this method generates all the assignments for the variables in the list.
-    //for example if the list has 2 variables with 2 outcomes each it will generate 4 assignments. {T ,T} , {T ,F} , {F ,T} , {F ,F}
-    private List<Map<String, String>> generateAllAssignmentsForVars(List<Variable> allVars, Set<String> targetVarNames) {
-        List<Variable> targetVars = allVars.stream()
-                .filter(v -> targetVarNames.contains(v.getName()))
-                .collect(Collectors.toList());
-
-        List<Map<String, String>> result = new ArrayList<>();
-        generateHelper(targetVars, 0, new HashMap<>(), result);
-        return result;
+        //walking the CPT table in the sorted order of the factor.
+        int[] cardinalities = new int[sortedVars.length];
+        for (int i = 0; i < sortedVars.length; i++) {
+            cardinalities[i] = network.getCardinality(sortedVars[i]);
+        }
+        return created(gatherFactor(network, sortedVars, network.getCPTTable(cpt), 0, cardinalities, sourceStrides));
     }
 
-
-    // method to convert a CPT to a Factor
-    private Factor convertCPTtoFactor(CPT cpt) {
-        // adding the variable and its parents to the list of variables
-        List<Variable> originalOrder = new ArrayList<>(cpt.getParents());
-        originalOrder.add(cpt.getVariable());
-        // sort variable list alphabetically (to match getProbability)
-        List<Variable> sortedVars = new ArrayList<>(originalOrder);
-        sortedVars.sort(Comparator.comparing(Variable::getName));
-        //generate all assignments in the sorted order
-        List<Map<String, String>> assignments = generateAllAssignments(sortedVars);
-        List<Double> newProbs = new ArrayList<>();
-        //for each assignment we are going to get the probability of the original order of the variables.
-        for (Map<String, String> assignment : assignments) {
-            Map<String, String> originalAssignment = new HashMap<>();
-            for (Variable var : originalOrder) {
-                originalAssignment.put(var.getName(), assignment.get(var.getName()));
-            }
-            double prob = cpt.getProbability(originalAssignment);
-            newProbs.add(prob);
+    //counting the CPTs and the hidden variables that are ancestors but not requisite , they are what Bayes-ball removed.
+    private void countPruned(BayesianNetwork network, boolean[] ancestors, boolean[] requisite, int[] knownAssignment) {
+        for (int cpt = 0; cpt < network.getCPTCount(); cpt++) {
+            int variable = network.getCPTVariable(cpt);
+            if (ancestors[variable] && !requisite[variable]) prunedFactors++;
+        }
+        for (int variable = 0; variable < network.size(); variable++) {
+            if (ancestors[variable] && !requisite[variable] && knownAssignment[variable] == -1) prunedHiddenVariables++;
         }
-        return new Factor(sortedVars, newProbs);
     }
 
     // safe method to remove factors that does not contribute to the query.
-    private void pruneFactors(List<Factor> factors, Set<String> ancestors) {
+    private void pruneFactors(List<Factor> factors, boolean[] ancestors) {
         factors.removeIf(factor -> !containsAny(factor, ancestors));
     }
-    //getting the ancestors of the query and evidence variables , I mentioned explicitly from CPTs because
-    // we cannot extract in from factors.
-    private Set<String> getAncestorsFromCPTs(List<CPT> cpts, Set<String> queryVars, Set<String> evidenceVars) {
-        Set<String> target = new HashSet<>(queryVars);
-        target.addAll(evidenceVars);
-        Set<String> ancestors = new HashSet<>(target);
-
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (CPT cpt : cpts) {
-                if (ancestors.contains(cpt.getVariable().getName())) {
-                    for (Variable parent : cpt.getParents()) {
-                        if (ancestors.add(parent.getName())) {
-                            changed = true;
-                        }
-                    }
-                }
-            }
-        }
-        return ancestors;
-    }
     // Check if a factor contains any of the variables in the set
-    private boolean containsAny(Factor factor, Set<String> vars) {
-        for (Variable v : factor.getVariables()) {
-            if (vars.contains(v.getName())) return true;
+    private boolean containsAny(Factor factor, boolean[] vars) {
+        for (int v : factor.getVariables()) {
+            if (vars[v]) return true;
         }
         return false;
     }
 
     // restrict the factors by the evidence outcomes.
-    private void restrictEvidence(List<Factor> factors, Map<String, String> evidence) {
+    private void restrictEvidence(List<Factor> factors, int[] evidence) {
         for (int i = 0; i < factors.size(); i++) {
             Factor restricted = restrictFactor(factors.get(i), evidence);
             factors.set(i, restricted);
         }
     }
-    //for each factor obtaining only the assignments that contains the evidence given outcomes.
-    private Factor restrictFactor(Factor factor, Map<String, String> evidence) {
+    //for each factor obtaining only the entries that agree with the evidence given outcomes.
+    //the evidence variables are fixed to an offset in the table and the rest of the variables are walked by their strides.
+    private Factor restrictFactor(Factor factor, int[] evidence) {
+        int[] variables = factor.getVariables();
+        //counting the variables that stay , a factor without evidence variables is kept as it is.
+        int remaining = 0;
+        for (int v : variables) {
+            if (evidence[v] == -1) remaining++;
+        }
+        if (remaining == variables.length) {
+            return factor;
+        }
         //create a new variable list without evidence variables
-        List<Variable> newVars = new ArrayList<>();
-        for (Variable v : factor.getVariables()) {
-            if (!evidence.containsKey(v.getName())) {
-                newVars.add(v);
+        int[] newVars = new int[remaining];
+        int[] cardinalities = new int[remaining];
+        int[] sourceStrides = new int[remaining];
+        int offset = 0;
+        boolean validEvidence = true;
+        int position = 0;
+        for (int i = 0; i < variables.length; i++) {
+            int outcome = evidence[variables[i]];
+            if (outcome == -1) {
+                newVars[position] = variables[i];
+                cardinalities[position] = factor.getCardinality(i);
+                sourceStrides[position] = factor.getStride(i);
+                position++;
+            } else if (outcome == -2) {
+                System.out.println("invalid outcome for variable: " + factor.getNetwork().getName(variables[i]));
+                validEvidence = false;
+            } else {
+                offset += outcome * factor.getStride(i);
             }
         }
-
-        List<Map<String, String>> assignments = generateAllAssignments(newVars);
-        List<Double> newProbs = new ArrayList<>();
-
-        for (Map<String, String> assignment : assignments) {
-            //adding to each partial assignment the evidence.
-            Map<String, String> fullAssignment = new HashMap<>(assignment);
-            fullAssignment.putAll(evidence);
-            //get the probability of the full assignment
-            newProbs.add(factor.getProbability(fullAssignment));
+        //an impossible evidence outcome makes every entry of the restricted factor 0.
+        if (!validEvidence) {
+            if (sparseDensity > 0) {
+                return created(Factor.sparse(factor.getNetwork(), newVars, new int[0], new double[0]));
+            }
+            int size = 1;
+            for (int cardinality : cardinalities) size *= cardinality;
+            return created(new Factor(factor.getNetwork(), newVars, new double[size]));
+        }
+        if (factor.isSparse()) {
+            return created(stored(FactorKernels.sparseRestrict(factor, evidence, newVars)));
         }
-
         //returning the new factor with the new variables and probabilities.
-        return new Factor(newVars, newProbs);
+        return created(gatherFactor(factor.getNetwork(), newVars, factor.getValues(), offset, cardinalities, sourceStrides));
     }
 
+    //the gathered table as a factor , with a sparse density it is counted first and a sparse one is made straight from the
+    //source , so a CPT or a restricted slice that is mostly 0 never gets its full table.
+    private Factor gatherFactor(BayesianNetwork network, int[] variables, double[] source, int offset, int[] cardinalities,
+                                int[] sourceStrides) {
+        if (sparseDensity > 0) {
+            int size = 1;
+            for (int cardinality : cardinalities) size *= cardinality;
+            int count = FactorKernels.gatherNonZeros(source, offset, cardinalities, sourceStrides, null, null);
+            if (count <= sparseDensity * size) {
+                int[] indexes = new int[count];
+                double[] values = new double[count];
+                FactorKernels.gatherNonZeros(source, offset, cardinalities, sourceStrides, indexes, values);
+                return Factor.sparse(network, variables, indexes, values);
+            }
+        }
+        return new Factor(network, variables, gather(source, offset, cardinalities, sourceStrides));
+    }
 
-    //get all variables from all factors
-    private Set<String> getAllVariables(List<Factor> factors) {
-        Set<String> vars = new HashSet<>();
-        for (Factor f : factors) {
-            for (Variable v : f.getVariables()) {
-                vars.add(v.getName());
+    //copies the entries of a source table into a new table laid out over the given cardinalities (last one changes the fastest).
+    //the position in the source is moved by the source strides like an odometer , so no assignment is ever built.
+    private double[] gather(double[] source, int offset, int[] cardinalities, int[] sourceStrides) {
+        int size = 1;
+        for (int cardinality : cardinalities) size *= cardinality;
+        double[] result = new double[size];
+        int[] counter = new int[cardinalities.length];
+        int sourceIndex = offset;
+        for (int i = 0; i < size; i++) {
+            result[i] = source[sourceIndex];
+            //advancing the odometer from the last digit and carrying to the left.
+            for (int k = cardinalities.length - 1; k >= 0; k--) {
+                counter[k]++;
+                sourceIndex += sourceStrides[k];
+                if (counter[k] < cardinalities[k]) break;
+                counter[k] = 0;
+                sourceIndex -= sourceStrides[k] * cardinalities[k];
             }
         }
-        return vars;
+        return result;
     }
 
     //it helps us find all the factors that one of their variables is equal to the given variable.
-    protected List<Factor> getFactorsMentioning(String var, List<Factor> factors) {
+    protected List<Factor> getFactorsMentioning(int var, List<Factor> factors) {
         List<Factor> result = new ArrayList<>();
         for (Factor f : factors) {
-            for (Variable v : f.getVariables()) {
-                if (v.getName().equals(var)) {
-                    result.add(f);
-                    break;
-                }
+            if (f.mentions(var)) {
+                result.add(f);
             }
         }
         return result;
     }
 
     //this method gets all the factors that has the hidden variable in them and joins them.
+    //the pairs are joined by the plan of planJoins , the smallest two first.
     private Factor joinFactors(List<Factor> factors) {
+        Factor[] slots = factors.toArray(new Factor[factors.size() + Math.max(factors.size() - 1, 0)]);
+        int[][] plan = planJoins(factors);
+        for (int step = 0; step < plan.length; step++) {
+            slots[factors.size() + step] = joinTwoFactors(slots[plan[step][0]], slots[plan[step][1]]);
+        }
+        //the last factor made is the joined factor.
+        return slots[slots.length - 1];
+
+    }
+
+    //the order of the pairwise joins , computed on the variables and sizes only so the fused elimination can follow it without the tables.
+    //the factors are slots 0 to n - 1 and the join of step i is slot n + i , every step is the pair of slots it joins.
+    private int[][] planJoins(List<Factor> factors) {
+        BayesianNetwork network = factors.get(0).getNetwork();
         //copying the factors to avoid modifying the original list.
-        List<Factor> factorsContainsHidden = new ArrayList<>(factors);
+        List<Shape> factorsContainsHidden = new ArrayList<>();
+        for (int i = 0; i < factors.size(); i++) {
+            factorsContainsHidden.add(new Shape(factors.get(i).getVariables(), factors.get(i).getSize(), i));
+        }
+        int[][] plan = new int[factors.size() - 1][];
+        int step = 0;
         while (factorsContainsHidden.size() > 1) {
             //first sort the factors by their size aka the number of entries in the probabilities list.
-            factorsContainsHidden.sort(Comparator.comparingInt(Factor::getSize));
-            int smallestSize = factorsContainsHidden.get(0).getSize();
-            List<Factor> smallestFactors = new ArrayList<>();
+            factorsContainsHidden.sort(Comparator.comparingInt(shape -> shape.size));
+            int smallestSize = factorsContainsHidden.get(0).size;
+            List<Shape> smallestFactors = new ArrayList<>();
             //adding the least size factors to the list of smallest factors.
-            for (Factor f : factorsContainsHidden) {
-                if (f.getSize() == smallestSize) {
+            for (Shape f : factorsContainsHidden) {
+                if (f.size == smallestSize) {
                     smallestFactors.add(f);
                 } else {
                     break;
@@ -264,14 +410,14 @@ public class VariableElimination extends BayesianAlgorithm {
             }
             //in case there are more than 2 factors with the same size we sort them by their ascii value , in case there are for most
             // 2 than thats the values.
-            Factor f1 = factorsContainsHidden.get(0);
-            Factor f2 = factorsContainsHidden.get(1);
+            Shape f1 = factorsContainsHidden.get(0);
+            Shape f2 = factorsContainsHidden.get(1);
             if (smallestFactors.size() > 1) {
                 //bubble sort the factors by their ascii value.
                 for (int i = 0; i < smallestFactors.size(); i++) {
                     for (int j = 0; j < smallestFactors.size() - 1; j++) {
-                        if (asciiValue(smallestFactors.get(j)) > asciiValue(smallestFactors.get(j + 1))) {
-                            Factor temp = smallestFactors.get(j);
+                        if (asciiValue(smallestFactors.get(j).variables, network) > asciiValue(smallestFactors.get(j + 1).variables, network)) {
+                            Shape temp = smallestFactors.get(j);
                             smallestFactors.set(j, smallestFactors.get(j + 1));
                             smallestFactors.set(j + 1, temp);
                         }
@@ -281,172 +427,287 @@ public class VariableElimination extends BayesianAlgorithm {
                 f1 = smallestFactors.get(0);
                 f2 = smallestFactors.get(1);
             }
-            Factor joined = joinTwoFactors(f1, f2);
+            int[] joinedVariables = union(f1.variables, f2.variables);
+            int joinedSize = 1;
+            for (int variable : joinedVariables) joinedSize *= network.getCardinality(variable);
+            plan[step] = new int[]{f1.slot, f2.slot};
             factorsContainsHidden.remove(f1);
             factorsContainsHidden.remove(f2);
-            factorsContainsHidden.add(joined);
+            factorsContainsHidden.add(new Shape(joinedVariables, joinedSize, factors.size() + step));
+            step++;
         }
-        //the last factor left is the joined factor.
-        return factorsContainsHidden.get(0);
+        return plan;
+    }
 
+    //the fused join and elimination , the hidden variable is summed out of the product of the factors entry by entry.
+    //every product is multiplied by the same pairwise plan as joinFactors and summed like eliminate , so the values are
+    //exactly the unfused ones , and the counts are the ones of the joins and the elimination the plan would have made.
+    //only the output table is allocated.
+    private Factor joinAndEliminate(List<Factor> factors, int hidden) {
+        BayesianNetwork network = factors.get(0).getNetwork();
+        int[][] plan = planJoins(factors);
+        //counting the joins of the plan on their variables , the same as joinTwoFactors.
+        int[][] slotVariables = new int[factors.size() + plan.length][];
+        for (int i = 0; i < factors.size(); i++) slotVariables[i] = factors.get(i).getVariables();
+        for (int step = 0; step < plan.length; step++) {
+            int[] vars1 = slotVariables[plan[step][0]];
+            int[] vars2 = slotVariables[plan[step][1]];
+            int[] joinedVariables = union(vars1, vars2);
+            slotVariables[factors.size() + step] = joinedVariables;
+            int size = 1;
+            for (int variable : joinedVariables) size *= network.getCardinality(variable);
+            largestFactorSize = Math.max(largestFactorSize, size);
+            if (vars1.length > 0 && vars2.length > 0) {
+                multiplicationCount += size;
+            }
+        }
+        int[] joinedVariables = slotVariables[slotVariables.length - 1];
+        inducedWidth = Math.max(inducedWidth, joinedVariables.length - 1);
+        //the output variables and the strides of every input factor by them , 0 when the factor doesn't mention the variable.
+        int[] remainingVars = new int[joinedVariables.length - 1];
+        int position = 0;
+        for (int variable : joinedVariables) {
+            if (variable != hidden) remainingVars[position++] = variable;
+        }
+        int[] cardinalities = new int[remainingVars.length];
+        int size = 1;
+        for (int i = 0; i < remainingVars.length; i++) {
+            cardinalities[i] = network.getCardinality(remainingVars[i]);
+            size *= cardinalities[i];
+        }
+        double[][] tables = new double[factors.size()][];
+        int[][] strides = new int[factors.size()][remainingVars.length];
+        int[] hiddenStrides = new int[factors.size()];
+        for (int j = 0; j < factors.size(); j++) {
+            Factor factor = factors.get(j);
+            tables[j] = factor.getValues();
+            for (int i = 0; i < remainingVars.length; i++) {
+                int index = factor.indexOfVariable(remainingVars[i]);
+                if (index != -1) strides[j][i] = factor.getStride(index);
+            }
+            hiddenStrides[j] = factor.getStride(factor.indexOfVariable(hidden));
+        }
+        int hiddenCardinality = network.getCardinality(hidden);
+        double[] newProbs = new double[size];
+        FactorKernels.run(size, parallelThreshold, (from, to) ->
+                FactorKernels.sumProduct(tables, strides, hiddenStrides, plan, cardinalities, hiddenCardinality, newProbs, from, to));
+        additionCount += size * (hiddenCardinality - 1);
+        return created(stored(new Factor(network, remainingVars, newProbs)));
     }
-    //the helper method for joinFactors that joins two factors.
-    private Factor joinTwoFactors(Factor f1, Factor f2) {
-        //setting a map of variable's names to variables.
-        Map<String, Variable> combineVariablesMap = new HashMap<>();
-
-        for (Variable v : f1.getVariables()) {
-            combineVariablesMap.putIfAbsent(v.getName(), deepCopyVariable(v));
-        }
-        for (Variable v : f2.getVariables()) {
-            combineVariablesMap.putIfAbsent(v.getName(), deepCopyVariable(v));
-        }
-        //sorting the variables by their names. for example A1 will be before A2.
-        List<String> sortedNames = new ArrayList<>(combineVariablesMap.keySet());
-        Collections.sort(sortedNames);
-        //based on the sorting we are going to create a new list of variables.
-        List<Variable> sortedVars = new ArrayList<>();
-        for (String name : sortedNames) sortedVars.add(combineVariablesMap.get(name));
-        //generate all assignments for all combined variables
-        List<Map<String, String>> allAssignments = generateAllAssignments(sortedVars);
-        List<Double> newProbs = new ArrayList<>();
-        Set<String> factor1Variables = f1.getVariables().stream().map(Variable::getName).collect(Collectors.toSet());
-        Set<String> factor2Variables = f2.getVariables().stream().map(Variable::getName).collect(Collectors.toSet());
-        for (Map<String, String> assignment : allAssignments) {
-            double p1 = f1.getProbability(assignment);
-            double p2 = f2.getProbability(assignment);
-            newProbs.add(p1 * p2);
-
-            // only count multiplications if the assignment depends on both
-            //  both factors contribute different variables to the assignment.
-            Set<String> keys = assignment.keySet();
-            // check if the assignment uses variables from both factors.
-            boolean usesF1 = keys.stream().anyMatch(factor1Variables::contains);
-            boolean usesF2 = keys.stream().anyMatch(factor2Variables::contains);
-            //if it does then we are going to add the multiplication count.
-            if (usesF1 && usesF2) {
-                multiplicationCount++;
+
+    //the relevant hidden variables in the iteration order of a HashSet of their names , the order the string version of VE
+    //walked them in. the sets are built the same way (the ancestors by passes over the CPTs) so the order is the same ,
+    //and an ordering that keeps the first variable on a tie (ProductSizeOrdering) chooses the same variables as before.
+    static List<Integer> hiddenVariables(Query query, BayesianNetwork network, boolean[] relevant) {
+        Set<String> target = new HashSet<>(query.getQuery().keySet());
+        target.addAll(query.getEvidence().keySet());
+        Set<String> ancestors = new HashSet<>(target);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int cpt = 0; cpt < network.getCPTCount(); cpt++) {
+                if (!ancestors.contains(network.getName(network.getCPTVariable(cpt)))) continue;
+                //the scope is the parents in their order and then the variable.
+                int[] scope = network.getCPTScope(cpt);
+                for (int i = 0; i < scope.length - 1; i++) {
+                    if (ancestors.add(network.getName(scope[i]))) {
+                        changed = true;
+                    }
+                }
             }
         }
-        return new Factor(sortedVars, newProbs);
+        Set<String> hidden = new HashSet<>(ancestors);
+        hidden.removeAll(query.getQuery().keySet());
+        hidden.removeAll(query.getEvidence().keySet());
+        List<Integer> res = new ArrayList<>();
+        for (String name : hidden) {
+            int variable = network.getId(name);
+            if (relevant[variable]) res.add(variable);
+        }
+        return res;
     }
 
-    // deep copy a variable
-    private Variable deepCopyVariable(Variable v) {
-        Variable copy = new Variable(v.getName());
-        for (String outcome : v.getOutcomes()) {
-            copy.addOutcome(outcome);
+    //the sorted union of two sorted id lists.
+    static int[] union(int[] vars1, int[] vars2) {
+        int[] merged = new int[vars1.length + vars2.length];
+        int count = 0;
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < vars1.length || i2 < vars2.length) {
+            if (i2 == vars2.length || (i1 < vars1.length && vars1[i1] < vars2[i2])) {
+                merged[count++] = vars1[i1++];
+            } else if (i1 == vars1.length || vars2[i2] < vars1[i1]) {
+                merged[count++] = vars2[i2++];
+            } else {
+                merged[count++] = vars1[i1++];
+                i2++;
+            }
         }
-        return copy;
+        return Arrays.copyOf(merged, count);
     }
 
+    //the helper method for joinFactors that joins two factors.
+    //both inputs are walked together with the strides of the combined variables , one multiplication per output entry.
+    private Factor joinTwoFactors(Factor f1, Factor f2) {
+        int[] vars1 = f1.getVariables();
+        int[] vars2 = f2.getVariables();
+        //merging the two sorted id lists , sorting by id is sorting by name. for example A1 will be before A2.
+        //a variable that is missing from one of the factors doesn't move its index , so its stride there is 0.
+        int[] merged = new int[vars1.length + vars2.length];
+        int[] mergedStrides1 = new int[merged.length];
+        int[] mergedStrides2 = new int[merged.length];
+        int count = 0;
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < vars1.length || i2 < vars2.length) {
+            if (i2 == vars2.length || (i1 < vars1.length && vars1[i1] < vars2[i2])) {
+                merged[count] = vars1[i1];
+                mergedStrides1[count] = f1.getStride(i1++);
+            } else if (i1 == vars1.length || vars2[i2] < vars1[i1]) {
+                merged[count] = vars2[i2];
+                mergedStrides2[count] = f2.getStride(i2++);
+            } else {
+                merged[count] = vars1[i1];
+                mergedStrides1[count] = f1.getStride(i1++);
+                mergedStrides2[count] = f2.getStride(i2++);
+            }
+            count++;
+        }
+        int[] sortedVars = Arrays.copyOf(merged, count);
+        int[] cardinalities = new int[count];
+        int size = 1;
+        for (int i = 0; i < count; i++) {
+            cardinalities[i] = f1.getNetwork().getCardinality(sortedVars[i]);
+            size *= cardinalities[i];
+        }
+        largestFactorSize = Math.max(largestFactorSize, size);
+        // only count multiplications if both factors contribute variables to the assignment.
+        if (vars1.length > 0 && vars2.length > 0) {
+            multiplicationCount += size;
+        }
+        //a sparse input is walked by its entries that are not 0 , the counts stay the ones of the full product.
+        if (f1.isSparse() || f2.isSparse()) {
+            return created(stored(FactorKernels.sparseProduct(f1, f2, sortedVars, parallelThreshold)));
+        }
+        double[] values1 = f1.getValues();
+        double[] values2 = f2.getValues();
+        double[] newProbs = new double[size];
+        int[] strides1 = Arrays.copyOf(mergedStrides1, count);
+        int[] strides2 = Arrays.copyOf(mergedStrides2, count);
+        FactorKernels.run(size, parallelThreshold, (from, to) ->
+                FactorKernels.product(values1, strides1, values2, strides2, cardinalities, newProbs, from, to));
+        return created(stored(new Factor(f1.getNetwork(), sortedVars, newProbs)));
+    }
 
     //eliminate the variable from the factor , by summing over its outcomes.
-    private Factor eliminate(Factor factor, String varToEliminate) {
+    //the remaining variables keep their order and strides , and the eliminated one is summed by its own stride.
+    private Factor eliminate(Factor factor, int varToEliminate) {
+        int eliminatedPosition = factor.indexOfVariable(varToEliminate);
+        if (eliminatedPosition == -1) {
+            throw new RuntimeException("Variable not found: " + factor.getNetwork().getName(varToEliminate));
+        }
         //creating a list of the variables without the variable to eliminate.
-        List<Variable> remainingVars  = new ArrayList<>();
-        for (Variable v : factor.getVariables()) {
-            if (!v.getName().equals(varToEliminate)) {
-                remainingVars.add(deepCopyVariable(v));
-            }
+        int[] variables = factor.getVariables();
+        int[] remainingVars = new int[variables.length - 1];
+        int[] cardinalities = new int[remainingVars.length];
+        int[] sourceStrides = new int[remainingVars.length];
+        int size = 1;
+        int position = 0;
+        for (int i = 0; i < variables.length; i++) {
+            if (i == eliminatedPosition) continue;
+            remainingVars[position] = variables[i];
+            cardinalities[position] = factor.getCardinality(i);
+            sourceStrides[position] = factor.getStride(i);
+            size *= cardinalities[position];
+            position++;
         }
-        Collections.sort(remainingVars, new Comparator<Variable>() {
-                    @Override
-                    public int compare(Variable o1, Variable o2) {
-                        return o1.getName().compareTo(o2.getName());
-                    }
-                });
-        //generate all assignments for the remaining variables
-        List < Map < String, String >> assignments = generateAllAssignments(remainingVars);
-        List<Double> newProbs = new ArrayList<>();
-        //getting the variable to eliminate from the factor.
-        Variable variableToRemove = findVariable(factor, varToEliminate);
-        //for each assignment (without the variable to eliminate) we are going to sum the probabilities of the assignment including the variable outcomes.
-        for (Map<String, String> currAssignment : assignments) {
-            double sum = 0;
-            boolean firstOutcome = true;
-            for (String outcome : variableToRemove.getOutcomes()) {
-                Map<String, String> currAssignmentWithOutcome = new HashMap<>(currAssignment);
-                currAssignmentWithOutcome.put(varToEliminate, outcome);
-                // get the probability of the extended assignment
-               double prob = factor.getProbability(currAssignmentWithOutcome);
-                if (firstOutcome) {
-                    sum = prob;
-                    firstOutcome = false;
-                } else {
-                    sum += prob;
-                    additionCount++;
-
-                }
-            }
-            newProbs.add(sum);
+        int eliminatedCardinality = factor.getCardinality(eliminatedPosition);
+        int eliminatedStride = factor.getStride(eliminatedPosition);
+        additionCount += size * (eliminatedCardinality - 1);
+        if (factor.isSparse()) {
+            return created(stored(FactorKernels.sparseSumOut(factor, eliminatedPosition, remainingVars, parallelThreshold)));
         }
+        double[] values = factor.getValues();
+        double[] newProbs = new double[size];
+        //for each entry (without the variable to eliminate) we are going to sum the probabilities over the variable outcomes.
+        FactorKernels.run(size, parallelThreshold, (from, to) ->
+                FactorKernels.sumOut(values, sourceStrides, cardinalities, eliminatedCardinality, eliminatedStride, newProbs, from, to));
         //creating a new factor with the remaining variables and the new probabilities.
-        List<Variable> cleanVars = new ArrayList<>();
-        for (Variable v : remainingVars) {
-            cleanVars.add(deepCopyVariable(v));
+        return created(stored(new Factor(factor.getNetwork(), remainingVars, newProbs)));
+    }
+
+    private static boolean anySparse(List<Factor> factors) {
+        for (Factor factor : factors) {
+            if (factor.isSparse()) return true;
         }
-        return new Factor(cleanVars, newProbs);
+        return false;
+    }
+
+    //counting a new factor and the cells it keeps for the metrics , after its format was chosen.
+    private Factor created(Factor factor) {
+        factorsCreated++;
+        cellsAllocated += factor.getStoredCells();
+        return factor;
     }
 
+    //choosing the format of a new factor by its density , sparse when at most the sparse density of its entries are not 0.
+    private Factor stored(Factor factor) {
+        if (sparseDensity <= 0) {
+            return factor;
+        }
+        boolean sparse = factor.countNonZeros() <= sparseDensity * factor.getSize();
+        if (sparse == factor.isSparse()) {
+            return factor;
+        }
+        return sparse ? factor.toSparse() : factor.toDense();
+    }
 
-    // normalize the factor probabilities so all sum to 1
+    // normalize the factor probabilities so all sum to 1 , in place.
     private void normalize(Factor factor) {
+        double[] values = factor.getValues();
         double total = 0;
         // summing all the probabilities
-        for (double p : factor.getProbabilities()) total += p;
+        for (double p : values) total += p;
         //then dividing each probability by the total so get the normalized (real) probabilities.
-        List<Double> normalized = new ArrayList<>();
-        for (double p : factor.getProbabilities()) {
-            normalized.add(p / total);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i] / total;
         }
-        factor.setProbabilities(normalized);
     }
-    //this method is used to find the variable in the factor by its name.
-    private Variable findVariable(Factor factor, String name) {
-        for (Variable v : factor.getVariables()) {
-            if (v.getName().equals(name)) return v;
-        }
-        throw new RuntimeException("Variable not found: " + name);
-    }
-    //this method generates all the assignments for the variables in the list , for example if the list has 2 variables with 2 outcomes each it will generate 4 assignments.
-    private List<Map<String, String>> generateAllAssignments(List<Variable> vars) {
-        List<Map<String, String>> result = new ArrayList<>();
-        generateHelper(vars, 0, new HashMap<>(), result);
-        return result;
+    //the rule that chooses the next variable to eliminate , its name is part of the elimination order cache key.
+    public EliminationOrdering getOrdering() {
+        return ordering;
     }
-    //helper method to generate all assignments for the variables in the list by choosing one outcome at a time recursively.
-    private void generateHelper(List<Variable> vars, int idx, Map<String, String> current, List<Map<String, String>> result) {
-        // base case: if we have assigned all variables, add the assignment to the result and return
-        if (idx == vars.size()) {
-            result.add(new HashMap<>(current));
-            return;
-        }
-        // recursive case: choose the current variable and iterate over its outcomes
-        Variable var = vars.get(idx);
-        for (String outcome : var.getOutcomes()) {
-            current.put(var.getName(), outcome);
-            generateHelper(vars, idx + 1, current, result);
-            // backtrack: remove the current variable from the assignment
-            current.remove(var.getName());
-        }
+
+    //the number of CPT factors and hidden variables the relevance pruning removed in the last query , -1 when it is off.
+    public int getPrunedFactors() {
+        return prunedFactors;
     }
-    //this method is used to choose the next variable to eliminate from the hidden variables list.
-    //in the classic VE we are going to choose the one with the lowest ascii value  , or lexicographically.
-    protected String chooseNextToEliminate(List<String> hiddenVariables, List<Factor> factors) {
-        List<String> sortedHidden = new ArrayList<>(hiddenVariables);
-        Collections.sort(sortedHidden);
-        return sortedHidden.get(0);
+
+    public int getPrunedHiddenVariables() {
+        return prunedHiddenVariables;
     }
     //method to calculate the ascii value of the factor to use it as a secondary key in the sorting.
     //this helps us compare B3 and B2 for example.
-    private int asciiValue(Factor factor) {
+    private int asciiValue(int[] variables, BayesianNetwork network) {
         int sum = 0;
-        for (Variable v : factor.getVariables()) {
-            for (char c : v.getName().toCharArray()) {
+        for (int v : variables) {
+            for (char c : network.getName(v).toCharArray()) {
                 sum += c;
             }
         }
         return sum;
     }
+
+    //the variables and the size of a factor in the join plan , the slot is its place in the plan.
+    private static final class Shape {
+        private final int[] variables;
+        private final int size;
+        private final int slot;
+
+        private Shape(int[] variables, int size, int slot) {
+            this.variables = variables;
+            this.size = size;
+            this.slot = slot;
+        }
+    }
 }
@@ -0,0 +1,13 @@
+//min-fill where a fill-in edge weighs the product of the cardinalities of its two variables ,
+//so an edge between variables with many outcomes costs more than an edge between binary ones.
+public class WeightedMinFillOrdering extends MinFillOrdering {
+    @Override
+    public String getName() {
+        return "weighted-min-fill";
+    }
+
+    @Override
+    protected long edgeWeight(int a, int b, BayesianNetwork network) {
+        return (long) network.getCardinality(a) * network.getCardinality(b);
+    }
+}